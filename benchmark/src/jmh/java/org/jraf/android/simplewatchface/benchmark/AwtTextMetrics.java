@@ -0,0 +1,86 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.benchmark;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.io.File;
+import java.io.IOException;
+
+import org.jraf.android.simplewatchface.core.text.Bounds;
+import org.jraf.android.simplewatchface.core.text.TextMetrics;
+
+/**
+ * {@link TextMetrics} backed by AWT, using the same TTF files as the watch face.  This is a stand-in for Android's {@code Paint} when running on
+ * a plain JVM: absolute timings differ from the device, but changes in the cost of the layout logic show up.
+ */
+public class AwtTextMetrics implements TextMetrics {
+    private static final String PROPERTY_FONTS_DIR = "benchmark.fontsDir";
+
+    private final Font mFont;
+    private final FontRenderContext mFontRenderContext = new FontRenderContext(null, true, true);
+
+    public AwtTextMetrics(Font font) {
+        mFont = font;
+    }
+
+    /**
+     * Loads a font from the watch face's assets.
+     *
+     * @param size Text size in pixels.
+     */
+    public static Font loadFont(String fontName, float size) throws IOException, FontFormatException {
+        String fontsDir = System.getProperty(PROPERTY_FONTS_DIR, "wear/src/main/assets/fonts");
+        Font font = Font.createFont(Font.TRUETYPE_FONT, new File(fontsDir, fontName));
+        return font.deriveFont(size);
+    }
+
+    @Override
+    public void getTextBounds(char[] text, int index, int count, Bounds bounds) {
+        GlyphVector glyphVector = mFont.createGlyphVector(mFontRenderContext, subArray(text, index, count));
+        setBounds(glyphVector, bounds);
+    }
+
+    @Override
+    public void getTextBounds(String text, Bounds bounds) {
+        GlyphVector glyphVector = mFont.createGlyphVector(mFontRenderContext, text);
+        setBounds(glyphVector, bounds);
+    }
+
+    private void setBounds(GlyphVector glyphVector, Bounds bounds) {
+        Rectangle pixelBounds = glyphVector.getPixelBounds(mFontRenderContext, 0, 0);
+        bounds.set(pixelBounds.x, pixelBounds.y, pixelBounds.x + pixelBounds.width, pixelBounds.y + pixelBounds.height);
+    }
+
+    private static char[] subArray(char[] text, int index, int count) {
+        if (index == 0 && count == text.length) return text;
+        char[] res = new char[count];
+        System.arraycopy(text, index, res, 0, count);
+        return res;
+    }
+}
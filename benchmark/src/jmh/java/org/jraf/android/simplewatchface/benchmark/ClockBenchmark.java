@@ -0,0 +1,86 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.benchmark;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.jraf.android.simplewatchface.core.clock.WallClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of decoding the time of a frame, with {@link Calendar} (as the engine used to) and with {@link WallClock}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClockBenchmark {
+    @Param({"Europe/Paris", "America/New_York", "Asia/Kolkata"})
+    public String timeZone;
+
+    private Calendar mCalendar;
+    private WallClock mWallClock;
+    private long mTimeMs;
+
+    @Setup
+    public void setUp() {
+        TimeZone zone = TimeZone.getTimeZone(timeZone);
+        mCalendar = Calendar.getInstance(zone);
+        mWallClock = new WallClock(zone);
+        // 2017-03-26 00:00 UTC: a few hours before the DST transition in Europe
+        mTimeMs = 1490486400000L;
+    }
+
+    @Benchmark
+    public void calendar(Blackhole blackhole) {
+        mTimeMs += 1000;
+        Calendar calendar = mCalendar;
+        calendar.setTimeInMillis(mTimeMs);
+        blackhole.consume(calendar.get(Calendar.HOUR_OF_DAY));
+        blackhole.consume(calendar.get(Calendar.MINUTE));
+        blackhole.consume(calendar.get(Calendar.SECOND));
+        blackhole.consume(calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    @Benchmark
+    public void wallClock(Blackhole blackhole) {
+        mTimeMs += 1000;
+        WallClock wallClock = mWallClock;
+        wallClock.setTimeMillis(mTimeMs);
+        blackhole.consume(wallClock.getHourOfDay());
+        blackhole.consume(wallClock.getMinute());
+        blackhole.consume(wallClock.getSecond());
+        blackhole.consume(wallClock.getDayOfMonth());
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.benchmark;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.concurrent.TimeUnit;
+
+import org.jraf.android.simplewatchface.core.layout.GlyphSpriteLayout;
+import org.jraf.android.simplewatchface.core.text.Bounds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of drawing the hour / minutes of an interactive frame: rasterizing the text (and blurring its shadow) at each frame, versus blitting
+ * sprites rendered once (what {@code GlyphAtlas} does on the device).  AWT's Java2D is a stand-in for Android's Skia here: absolute timings
+ * differ from the device, but the relative cost of the two approaches shows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GlyphAtlasBenchmark {
+    private static final int CANVAS_SIZE = 320;
+    private static final char[] GLYPHS = GlyphSpriteLayout.GLYPHS;
+    private static final char[] TEXT = {'1', '0', ':', '4', '8'};
+
+    @Param({"Exo2-ExtraBoldItalic.ttf", "Anton.ttf", "Orbitron-Medium.ttf"})
+    public String fontName;
+
+    @Param({"54"})
+    public int timeSize;
+
+    /**
+     * 0 is no shadow (ambient mode), 6 is the interactive shadow (4dp) on a 240dpi screen.
+     */
+    @Param({"0", "6"})
+    public int shadowRadius;
+
+    private BufferedImage mImage;
+    private Graphics2D mGraphics;
+    private Font mFont;
+    private final FontRenderContext mFontRenderContext = new FontRenderContext(null, true, true);
+
+    /**
+     * Scratch layer in which the shadow is rendered and blurred at each frame.  Like the mask of a blur mask filter, it only covers the text's
+     * bounds (plus how far the blur reaches).
+     */
+    private BufferedImage mShadowLayer;
+    private Graphics2D mShadowGraphics;
+    private ConvolveOp mBlurX;
+    private ConvolveOp mBlurY;
+    private BufferedImage mBlurTemp;
+    private int mShadowLayerX;
+    private int mShadowLayerY;
+
+    /*
+     * Atlas: all the sprites on one row, laid out by the same code as on the device.
+     */
+    private BufferedImage mAtlas;
+    private final GlyphSpriteLayout mSpriteLayout = new GlyphSpriteLayout();
+    private final Bounds mSrcBounds = new Bounds();
+    private final Bounds mDstBounds = new Bounds();
+
+    @Setup
+    public void setUp() throws Exception {
+        mImage = new BufferedImage(CANVAS_SIZE, CANVAS_SIZE, BufferedImage.TYPE_INT_ARGB);
+        mGraphics = createGraphics(mImage);
+        mFont = AwtTextMetrics.loadFont(fontName, timeSize);
+        mGraphics.setFont(mFont);
+
+        if (shadowRadius > 0) {
+            // Same room for the shadow as the sprites
+            int padding = GlyphSpriteLayout.getBlurExtent(shadowRadius) + 1;
+            Rectangle textBounds = mFont.createGlyphVector(mFontRenderContext, TEXT).getPixelBounds(mFontRenderContext, 0, 0);
+            mShadowLayerX = textBounds.x - padding;
+            mShadowLayerY = textBounds.y - padding;
+            int width = textBounds.width + 2 * padding;
+            int height = textBounds.height + 2 * padding;
+            mShadowLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            mShadowGraphics = createGraphics(mShadowLayer);
+            mShadowGraphics.setFont(mFont);
+            mBlurTemp = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            float[] kernel = createGaussianKernel(shadowRadius);
+            mBlurX = new ConvolveOp(new Kernel(kernel.length, 1, kernel), ConvolveOp.EDGE_NO_OP, null);
+            mBlurY = new ConvolveOp(new Kernel(1, kernel.length, kernel), ConvolveOp.EDGE_NO_OP, null);
+        }
+
+        // Render the atlas, the same way as GlyphAtlas.update()
+        float[] advances = new float[GLYPHS.length];
+        for (int i = 0; i < GLYPHS.length; i++) {
+            GlyphVector glyphVector = mFont.createGlyphVector(mFontRenderContext, new char[] {GLYPHS[i]});
+            advances[i] = glyphVector.getGlyphMetrics(0).getAdvance();
+        }
+        GlyphSpriteLayout spriteLayout = mSpriteLayout;
+        spriteLayout.update(new AwtTextMetrics(mFont), advances, shadowRadius);
+        int atlasWidth = spriteLayout.getAtlasWidth();
+        int atlasHeight = spriteLayout.getAtlasHeight();
+        mAtlas = new BufferedImage(atlasWidth, atlasHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D atlasGraphics = createGraphics(mAtlas);
+        atlasGraphics.setFont(mFont);
+        for (int i = 0; i < GLYPHS.length; i++) {
+            atlasGraphics.drawString(String.valueOf(GLYPHS[i]), spriteLayout.getGlyphOriginX(i), spriteLayout.getGlyphOriginY(i));
+        }
+        if (shadowRadius > 0) {
+            // The sprites include the blurred shadow
+            BufferedImage shadow = new BufferedImage(atlasWidth, atlasHeight, BufferedImage.TYPE_INT_ARGB);
+            mBlurY.filter(mBlurX.filter(mAtlas, null), shadow);
+            Graphics2D shadowGraphics = createGraphics(shadow);
+            shadowGraphics.drawImage(mAtlas, 0, 0, null);
+            shadowGraphics.dispose();
+            mAtlas = shadow;
+        }
+        atlasGraphics.dispose();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mGraphics.dispose();
+        if (mShadowGraphics != null) mShadowGraphics.dispose();
+    }
+
+    private static Graphics2D createGraphics(BufferedImage image) {
+        Graphics2D res = image.createGraphics();
+        res.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        res.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        res.setColor(Color.WHITE);
+        return res;
+    }
+
+    /**
+     * Gaussian kernel of the blur of a shadow of the given radius, with the sigma Skia converts it to.
+     */
+    private static float[] createGaussianKernel(int radius) {
+        int extent = GlyphSpriteLayout.getBlurExtent(radius);
+        float[] res = new float[2 * extent + 1];
+        float sigma = 0.57735f * radius + 0.5f;
+        float sum = 0;
+        for (int i = -extent; i <= extent; i++) {
+            res[i + extent] = (float) Math.exp(-(i * i) / (2 * sigma * sigma));
+            sum += res[i + extent];
+        }
+        for (int i = 0; i < res.length; i++) {
+            res[i] /= sum;
+        }
+        return res;
+    }
+
+    /**
+     * The text rasterized at each frame, with its shadow rendered and blurred at each frame too (what drawing text with a shadow layer does).
+     */
+    @Benchmark
+    public BufferedImage drawText() {
+        int x = 16;
+        int y = CANVAS_SIZE / 2;
+        if (shadowRadius > 0) {
+            Graphics2D shadowGraphics = mShadowGraphics;
+            shadowGraphics.setComposite(AlphaComposite.Clear);
+            shadowGraphics.fillRect(0, 0, mShadowLayer.getWidth(), mShadowLayer.getHeight());
+            shadowGraphics.setComposite(AlphaComposite.SrcOver);
+            shadowGraphics.drawChars(TEXT, 0, TEXT.length, -mShadowLayerX, -mShadowLayerY);
+            mBlurX.filter(mShadowLayer, mBlurTemp);
+            mBlurY.filter(mBlurTemp, mShadowLayer);
+            mGraphics.drawImage(mShadowLayer, x + mShadowLayerX, y + mShadowLayerY, null);
+        }
+        mGraphics.drawChars(TEXT, 0, TEXT.length, x, y);
+        return mImage;
+    }
+
+    /**
+     * The sprites of the glyphs, rendered once, blitted at each frame.
+     */
+    @Benchmark
+    public BufferedImage glyphAtlas() {
+        Graphics2D graphics = mGraphics;
+        int originX = 16;
+        int originY = CANVAS_SIZE / 2;
+        float advance = 0;
+        Bounds src = mSrcBounds;
+        Bounds dst = mDstBounds;
+        for (int i = 0; i < TEXT.length; i++) {
+            advance = mSpriteLayout.place(TEXT[i], originX, originY, advance, src, dst);
+            graphics.drawImage(mAtlas, dst.left, dst.top, dst.right, dst.bottom, src.left, src.top, src.right, src.bottom, null);
+        }
+        return mImage;
+    }
+}
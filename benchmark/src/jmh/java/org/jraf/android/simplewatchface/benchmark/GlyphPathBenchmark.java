@@ -0,0 +1,146 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.benchmark;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of drawing the outlined text of a burn-in protection ambient frame: stroking the text's outlines at each frame, versus drawing glyph
+ * paths extracted once (what {@code GlyphPathCache} does on the device).<br/>
+ * The watch face's ambient paints don't set a stroke width, so on the device the stroke is a hairline (width 0): {@code GlyphPathCache} then
+ * caches the raw glyph outlines and strokes them at each frame.  With a wider stroke, it caches the outlines of the strokes and fills them.  AWT's Java2D is a stand-in for Android's Skia here: absolute
+ * timings differ from the device, but the relative cost of the two approaches shows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GlyphPathBenchmark {
+    private static final int CANVAS_SIZE = 320;
+    private static final String TEXT = "10:48";
+
+    @Param({"Exo2-ExtraBoldItalic.ttf", "Anton.ttf", "Orbitron-Medium.ttf"})
+    public String fontName;
+
+    @Param({"44", "54"})
+    public int timeSize;
+
+    /**
+     * 0 is a hairline, which is what the watch face uses.
+     */
+    @Param({"0", "2"})
+    public float strokeWidth;
+
+    private BufferedImage mImage;
+    private Graphics2D mGraphics;
+    private Font mFont;
+    private final FontRenderContext mFontRenderContext = new FontRenderContext(null, true, true);
+    private BasicStroke mStroke;
+
+    private boolean mHairline;
+    private final Map<Character, Shape> mGlyphOutlines = new HashMap<>();
+    private final Map<Character, Float> mGlyphAdvances = new HashMap<>();
+
+    @Setup
+    public void setUp() throws Exception {
+        mImage = new BufferedImage(CANVAS_SIZE, CANVAS_SIZE, BufferedImage.TYPE_INT_ARGB);
+        mGraphics = mImage.createGraphics();
+        mGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        mGraphics.setColor(Color.WHITE);
+        mFont = AwtTextMetrics.loadFont(fontName, timeSize);
+        mStroke = new BasicStroke(strokeWidth);
+        mHairline = strokeWidth == 0;
+
+        for (int i = 0; i < TEXT.length(); i++) {
+            char c = TEXT.charAt(i);
+            GlyphVector glyphVector = mFont.createGlyphVector(mFontRenderContext, String.valueOf(c));
+            // Like GlyphPathCache: a hairline has no stroke outline, the raw glyph outline is kept
+            Shape outline = glyphVector.getOutline();
+            mGlyphOutlines.put(c, mHairline ? outline : mStroke.createStrokedShape(outline));
+            mGlyphAdvances.put(c, glyphVector.getGlyphMetrics(0).getAdvance());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mGraphics.dispose();
+    }
+
+    /**
+     * Glyph outlines extracted from the font and stroked at each frame (what drawing text with a stroke paint does).
+     */
+    @Benchmark
+    public BufferedImage strokedText() {
+        Graphics2D graphics = mGraphics;
+        graphics.setStroke(mStroke);
+        GlyphVector glyphVector = mFont.createGlyphVector(mFontRenderContext, TEXT);
+        graphics.draw(glyphVector.getOutline(16, CANVAS_SIZE / 2));
+        return mImage;
+    }
+
+    /**
+     * Outlines of each glyph extracted once, translated and drawn at each frame: stroked for a hairline, or filled (they are the outlines of
+     * the strokes) otherwise.
+     */
+    @Benchmark
+    public BufferedImage cachedGlyphPaths() {
+        Graphics2D graphics = mGraphics;
+        graphics.setStroke(mStroke);
+        float x = 16;
+        float y = CANVAS_SIZE / 2;
+        for (int i = 0; i < TEXT.length(); i++) {
+            char c = TEXT.charAt(i);
+            graphics.translate(x, y);
+            if (mHairline) {
+                graphics.draw(mGlyphOutlines.get(c));
+            } else {
+                graphics.fill(mGlyphOutlines.get(c));
+            }
+            graphics.translate(-x, -y);
+            x += mGlyphAdvances.get(c);
+        }
+        return mImage;
+    }
+}
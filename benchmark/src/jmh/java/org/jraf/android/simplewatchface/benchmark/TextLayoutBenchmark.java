@@ -0,0 +1,124 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.benchmark;
+
+import java.awt.Font;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.jraf.android.simplewatchface.core.format.TimeFormatter;
+import org.jraf.android.simplewatchface.core.layout.TextLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of {@link TextLayout} for each frame (layout cached, only the seconds changed) and at each minute rollover (everything measured again),
+ * with the watch face's fonts, at different sizes and with dates formatted in different locales.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TextLayoutBenchmark {
+    private static final float SECONDS_SIZE_FACTOR = .5f;
+    private static final float AM_PM_SIZE_FACTOR = .35f;
+    private static final float DATE_SIZE = 28;
+    private static final int CANVAS_WIDTH = 320;
+    private static final int MARGIN_BORDERS = 8;
+    private static final int MARGIN_SECONDS = 4;
+    private static final int MARGIN_DATE = 4;
+
+    @Param({"Exo2-ExtraBoldItalic.ttf", "Anton.ttf", "IndieFlower.ttf", "Orbitron-Medium.ttf", "Raleway-ExtraLight.ttf"})
+    public String fontName;
+
+    @Param({"28", "44", "54"})
+    public int timeSize;
+
+    @Param({"en", "fr", "de", "ru", "ja"})
+    public String locale;
+
+    @Param({"true", "false"})
+    public boolean isRound;
+
+    private AwtTextMetrics mHourMinutesMetrics;
+    private AwtTextMetrics mSecondsMetrics;
+    private AwtTextMetrics mAmPmMetrics;
+    private AwtTextMetrics mDateMetrics;
+
+    private final TextLayout mTextLayout = new TextLayout();
+    private final char[] mHourMinutes = new char[TimeFormatter.HOUR_MINUTES_MAX_LENGTH];
+    private int mHourMinutesLength;
+    private char[] mAmPm;
+    private String mDate;
+
+    @Setup
+    public void setUp() throws Exception {
+        Font timeFont = AwtTextMetrics.loadFont(fontName, timeSize);
+        mHourMinutesMetrics = new AwtTextMetrics(timeFont);
+        mSecondsMetrics = new AwtTextMetrics(timeFont.deriveFont(timeSize * SECONDS_SIZE_FACTOR));
+        mAmPmMetrics = new AwtTextMetrics(timeFont.deriveFont(timeSize * AM_PM_SIZE_FACTOR));
+        mDateMetrics = new AwtTextMetrics(AwtTextMetrics.loadFont(fontName, DATE_SIZE));
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2017, Calendar.SEPTEMBER, 28, 22, 48, 0);
+        mHourMinutesLength = TimeFormatter.formatHourMinutes(calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), false, mHourMinutes);
+        mAmPm = TimeFormatter.getAmPm(calendar.get(Calendar.HOUR_OF_DAY));
+        Locale dateLocale = new Locale(locale);
+        mDate = new SimpleDateFormat("EEE d MMM", dateLocale).format(calendar.getTime());
+
+        update();
+    }
+
+    private boolean update() {
+        return mTextLayout.update(CANVAS_WIDTH, mHourMinutes, mHourMinutesLength, true, mDate, mAmPm, mHourMinutesMetrics, mSecondsMetrics,
+                mDateMetrics, mAmPmMetrics, isRound, MARGIN_BORDERS, MARGIN_DATE, MARGIN_SECONDS);
+    }
+
+    /**
+     * A frame where only the seconds changed: the cached layout is used.
+     */
+    @Benchmark
+    public int perSecondFrame() {
+        update();
+        return mTextLayout.secondsX;
+    }
+
+    /**
+     * A frame where the minute changed: everything is measured and positioned again.
+     */
+    @Benchmark
+    public int perMinuteFrame() {
+        mTextLayout.invalidate();
+        update();
+        return mTextLayout.secondsX;
+    }
+}
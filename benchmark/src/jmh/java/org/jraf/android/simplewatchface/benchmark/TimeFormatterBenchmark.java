@@ -0,0 +1,64 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jraf.android.simplewatchface.core.format.TimeFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of formatting the time of a frame with {@link TimeFormatter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeFormatterBenchmark {
+    @Param({"true", "false"})
+    public boolean is24HourFormat;
+
+    private final char[] mHourMinutes = new char[TimeFormatter.HOUR_MINUTES_MAX_LENGTH];
+    private final char[] mSeconds = new char[TimeFormatter.SECONDS_LENGTH];
+    private int mSecondOfDay;
+
+    @Benchmark
+    public void formatFrame(Blackhole blackhole) {
+        mSecondOfDay = (mSecondOfDay + 1) % 86400;
+        int hourOfDay = mSecondOfDay / 3600;
+        int minute = mSecondOfDay / 60 % 60;
+        int second = mSecondOfDay % 60;
+        blackhole.consume(TimeFormatter.formatHourMinutes(hourOfDay, minute, is24HourFormat, mHourMinutes));
+        TimeFormatter.formatSeconds(second, mSeconds);
+        blackhole.consume(mSeconds);
+        blackhole.consume(TimeFormatter.getAmPm(hourOfDay));
+    }
+}
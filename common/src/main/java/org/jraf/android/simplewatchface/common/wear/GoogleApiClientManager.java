@@ -0,0 +1,184 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.common.wear;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.Wearable;
+
+import org.jraf.android.util.log.Log;
+
+/**
+ * Shares one {@link GoogleApiClient} between its users.<br/>
+ * Users call {@link #acquire()} before using the client, and {@link #release()} when they are done.  The client is only disconnected
+ * once it has not been used for the idle timeout, so that back to back uses don't pay for a new connection.
+ */
+public class GoogleApiClientManager {
+    private final Context mContext;
+    private final long mIdleTimeoutMs;
+    private final long mConnectTimeoutMs;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Guarded by {@code this}, as well as all the fields below.
+     */
+    private GoogleApiClient mGoogleApiClient;
+    private int mRefCount;
+    private boolean mConnecting;
+    @Nullable
+    private ConnectionResult mLastConnectionFailure;
+
+    /**
+     * @param idleTimeoutMs How long to keep the client connected once nobody uses it.
+     * @param connectTimeoutMs How long to wait for a connection in {@link #acquire()}.
+     */
+    public GoogleApiClientManager(Context context, long idleTimeoutMs, long connectTimeoutMs) {
+        mContext = context.getApplicationContext();
+        mIdleTimeoutMs = idleTimeoutMs;
+        mConnectTimeoutMs = connectTimeoutMs;
+    }
+
+    /**
+     * Registers a user of the client, and waits until it is connected (or the connection fails, or times out).<br/>
+     * If the returned result is a failure, the caller is not registered and must <em>not</em> call {@link #release()}.
+     */
+    @WorkerThread
+    @NonNull
+    public synchronized ConnectionResult acquire() {
+        mHandler.removeCallbacks(mIdleDisconnectRunnable);
+        if (mGoogleApiClient == null) {
+            mGoogleApiClient = new GoogleApiClient.Builder(mContext)
+                    .addApi(Wearable.API)
+                    .addConnectionCallbacks(mConnectionCallbacks)
+                    .addOnConnectionFailedListener(mOnConnectionFailedListener)
+                    .build();
+        }
+        if (mGoogleApiClient.isConnected()) {
+            // Warm client: no handshake needed
+            mRefCount++;
+            return new ConnectionResult(ConnectionResult.SUCCESS);
+        }
+
+        if (!mConnecting) {
+            Log.d("Connecting");
+            mConnecting = true;
+            mLastConnectionFailure = null;
+            // Asynchronous: the callbacks are called on the main thread
+            mGoogleApiClient.connect();
+        }
+        long deadlineMs = System.currentTimeMillis() + mConnectTimeoutMs;
+        while (mConnecting) {
+            long remainingMs = deadlineMs - System.currentTimeMillis();
+            if (remainingMs <= 0) break;
+            try {
+                wait(remainingMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (mGoogleApiClient.isConnected()) {
+            mRefCount++;
+            return new ConnectionResult(ConnectionResult.SUCCESS);
+        }
+        ConnectionResult res = mLastConnectionFailure != null ? mLastConnectionFailure : new ConnectionResult(ConnectionResult.TIMEOUT);
+        Log.w("Could not connect: " + res);
+        if (mRefCount == 0) scheduleIdleDisconnect();
+        return res;
+    }
+
+    /**
+     * Unregisters a user of the client.  The client is disconnected after the idle timeout if nobody else uses it.
+     */
+    public synchronized void release() {
+        if (mRefCount == 0) throw new IllegalStateException("release() called more times than acquire()");
+        mRefCount--;
+        if (mRefCount == 0) scheduleIdleDisconnect();
+    }
+
+    /**
+     * Returns the client.  Only valid between a successful {@link #acquire()} and the matching {@link #release()}.
+     */
+    public synchronized GoogleApiClient getClient() {
+        return mGoogleApiClient;
+    }
+
+    private void scheduleIdleDisconnect() {
+        mHandler.removeCallbacks(mIdleDisconnectRunnable);
+        mHandler.postDelayed(mIdleDisconnectRunnable, mIdleTimeoutMs);
+    }
+
+    private final Runnable mIdleDisconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (GoogleApiClientManager.this) {
+                if (mRefCount > 0 || mGoogleApiClient == null) return;
+                Log.d("Idle: disconnecting");
+                mGoogleApiClient.disconnect();
+                mGoogleApiClient = null;
+                mConnecting = false;
+                GoogleApiClientManager.this.notifyAll();
+            }
+        }
+    };
+
+    private final GoogleApiClient.ConnectionCallbacks mConnectionCallbacks = new GoogleApiClient.ConnectionCallbacks() {
+        @Override
+        public void onConnected(@Nullable Bundle bundle) {
+            Log.d("Connected");
+            synchronized (GoogleApiClientManager.this) {
+                mConnecting = false;
+                GoogleApiClientManager.this.notifyAll();
+            }
+        }
+
+        @Override
+        public void onConnectionSuspended(int cause) {
+            // The client reconnects automatically
+            Log.w("Connection suspended cause=" + cause);
+        }
+    };
+
+    private final GoogleApiClient.OnConnectionFailedListener mOnConnectionFailedListener = new GoogleApiClient.OnConnectionFailedListener() {
+        @Override
+        public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+            Log.w("Connection failed: " + connectionResult);
+            synchronized (GoogleApiClientManager.this) {
+                mConnecting = false;
+                mLastConnectionFailure = connectionResult;
+                GoogleApiClientManager.this.notifyAll();
+            }
+        }
+    };
+}
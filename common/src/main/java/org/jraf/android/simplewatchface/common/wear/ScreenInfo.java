@@ -0,0 +1,96 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.common.wear;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.wearable.DataMap;
+
+/**
+ * Characteristics of the watch screen, published by the watch so that the phone can prepare pictures at the right size.
+ */
+public final class ScreenInfo {
+    private static final String EXTRA_WIDTH = "EXTRA_WIDTH";
+    private static final String EXTRA_HEIGHT = "EXTRA_HEIGHT";
+    private static final String EXTRA_ROUND = "EXTRA_ROUND";
+    private static final String EXTRA_DENSITY_DPI = "EXTRA_DENSITY_DPI";
+
+    public final int width;
+    public final int height;
+    public final boolean round;
+    public final int densityDpi;
+
+    public ScreenInfo(int width, int height, boolean round, int densityDpi) {
+        this.width = width;
+        this.height = height;
+        this.round = round;
+        this.densityDpi = densityDpi;
+    }
+
+    void writeTo(DataMap dataMap) {
+        dataMap.putInt(EXTRA_WIDTH, width);
+        dataMap.putInt(EXTRA_HEIGHT, height);
+        dataMap.putBoolean(EXTRA_ROUND, round);
+        dataMap.putInt(EXTRA_DENSITY_DPI, densityDpi);
+    }
+
+    /**
+     * @return the screen info, or {@code null} if the given map doesn't contain a valid one.
+     */
+    @Nullable
+    static ScreenInfo readFrom(DataMap dataMap) {
+        int width = dataMap.getInt(EXTRA_WIDTH);
+        int height = dataMap.getInt(EXTRA_HEIGHT);
+        if (width <= 0 || height <= 0) return null;
+        return new ScreenInfo(width, height, dataMap.getBoolean(EXTRA_ROUND), dataMap.getInt(EXTRA_DENSITY_DPI));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ScreenInfo that = (ScreenInfo) o;
+        return width == that.width && height == that.height && round == that.round && densityDpi == that.densityDpi;
+    }
+
+    @Override
+    public int hashCode() {
+        int res = width;
+        res = 31 * res + height;
+        res = 31 * res + (round ? 1 : 0);
+        res = 31 * res + densityDpi;
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        return "ScreenInfo{" +
+                "width=" + width +
+                ", height=" + height +
+                ", round=" + round +
+                ", densityDpi=" + densityDpi +
+                '}';
+    }
+}
@@ -25,44 +25,63 @@
 package org.jraf.android.simplewatchface.common.wear;
 
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.InputStream;
 
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.Asset;
 import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
-import org.jraf.android.util.io.IoUtil;
 import org.jraf.android.util.log.Log;
 
 /**
  * Helper singleton class to deal with the wear APIs.<br/>
- * Note: {@link #connect(Context)} must be called prior to calling all the other methods.
+ * Note: {@link #connect(Context)} must be called (and succeed) prior to calling all the other methods, and {@link #disconnect()} must be
+ * called once done.
  */
 public class WearHelper {
     private static final WearHelper INSTANCE = new WearHelper();
 
     private static final String PATH_SETTINGS = "/settings";
+    private static final String PATH_SCREEN_INFO = "/screenInfo";
 
+    /**
+     * Used when the watch hasn't published its screen info.
+     */
     private static final int MAX_BITMAP_DIMEN = 400;
 
+    /**
+     * WebP quality of the background picture sent to the watch.
+     */
+    public static final int DEFAULT_PICTURE_QUALITY = 80;
+
+    /**
+     * How long to keep the connection once nobody uses it, so that back to back syncs can reuse it.
+     */
+    private static final long IDLE_TIMEOUT_MS = 30 * 1000;
+
+    private static final long CONNECT_TIMEOUT_MS = 10 * 1000;
+
     public static final String EXTRA_BACKGROUND_PICTURE = "EXTRA_BACKGROUND_PICTURE";
 
 
-    private Context mContext;
-    private GoogleApiClient mGoogleApiClient;
+    private GoogleApiClientManager mGoogleApiClientManager;
 
     private WearHelper() {}
 
@@ -70,46 +89,108 @@ public class WearHelper {
         return INSTANCE;
     }
 
+    /**
+     * Connects, or reuses the current connection.  Blocks until connected, or until the connection fails or times out.<br/>
+     * Each successful call must be balanced by a call to {@link #disconnect()}.
+     *
+     * @return {@code true} if connected, {@code false} otherwise (in which case {@link #disconnect()} must not be called).
+     */
     @WorkerThread
-    public synchronized void connect(Context context) {
+    public boolean connect(Context context) {
         Log.d();
-        if (mGoogleApiClient != null) {
-            Log.d("Already connected");
-            return;
-        }
-
-        mContext = context.getApplicationContext();
-        mGoogleApiClient = new GoogleApiClient.Builder(context).addApi(Wearable.API).build();
-        // Blocking
-        ConnectionResult connectionResult = mGoogleApiClient.blockingConnect();
+        ConnectionResult connectionResult = getGoogleApiClientManager(context).acquire();
         if (!connectionResult.isSuccess()) {
-            // TODO handle failures
+            Log.w("Could not connect: " + connectionResult);
+            return false;
         }
+        return true;
     }
 
-    public synchronized void disconnect() {
+    /**
+     * Releases the connection.  The actual disconnection happens later, if the connection is not reused in the meantime.
+     */
+    public void disconnect() {
         Log.d();
-        if (mGoogleApiClient != null) mGoogleApiClient.disconnect();
-        mGoogleApiClient = null;
+        mGoogleApiClientManager.release();
+    }
+
+    private synchronized GoogleApiClientManager getGoogleApiClientManager(Context context) {
+        if (mGoogleApiClientManager == null) {
+            mGoogleApiClientManager = new GoogleApiClientManager(context, IDLE_TIMEOUT_MS, CONNECT_TIMEOUT_MS);
+        }
+        return mGoogleApiClientManager;
+    }
+
+    private GoogleApiClient getGoogleApiClient() {
+        return mGoogleApiClientManager.getClient();
     }
 
     @WorkerThread
     public void putSettings(@NonNull Bitmap backgroundPicture) {
+        putSettings(backgroundPicture, DEFAULT_PICTURE_QUALITY);
+    }
+
+    /**
+     * Sends the background picture, resized to the watch screen (if it has published its {@link ScreenInfo}) and encoded in WebP.
+     *
+     * @param quality The WebP quality, from 0 to 100.
+     */
+    @WorkerThread
+    public void putSettings(@NonNull Bitmap backgroundPicture, int quality) {
         Log.d();
+        ScreenInfo screenInfo = getScreenInfo();
+        Log.d("screenInfo=" + screenInfo);
         // Create new value
         PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(PATH_SETTINGS);
 
         DataMap dataMap = putDataMapRequest.getDataMap();
-        dataMap.putAsset(EXTRA_BACKGROUND_PICTURE, createAssetFromBitmap(backgroundPicture));
+        dataMap.putAsset(EXTRA_BACKGROUND_PICTURE, createAssetFromBitmap(backgroundPicture, screenInfo, quality));
 
         PutDataRequest request = putDataMapRequest.asPutDataRequest();
-        Wearable.DataApi.putDataItem(mGoogleApiClient, request).await();
+        Wearable.DataApi.putDataItem(getGoogleApiClient(), request).await();
     }
 
     @WorkerThread
     public void removeSettings() {
         Log.d();
-        Wearable.DataApi.deleteDataItems(mGoogleApiClient, createUri(PATH_SETTINGS)).await();
+        Wearable.DataApi.deleteDataItems(getGoogleApiClient(), createUri(PATH_SETTINGS)).await();
+    }
+
+    /**
+     * Publishes the characteristics of this watch's screen.
+     */
+    @WorkerThread
+    public void putScreenInfo(@NonNull ScreenInfo screenInfo) {
+        Log.d("screenInfo=" + screenInfo);
+        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(PATH_SCREEN_INFO);
+        screenInfo.writeTo(putDataMapRequest.getDataMap());
+        PutDataRequest request = putDataMapRequest.asPutDataRequest();
+        Wearable.DataApi.putDataItem(getGoogleApiClient(), request).await();
+    }
+
+    /**
+     * Retrieves the characteristics of the watch screen, as published by the watch.
+     *
+     * @return the screen info, or {@code null} if the watch hasn't published it (yet).
+     */
+    @WorkerThread
+    @Nullable
+    public ScreenInfo getScreenInfo() {
+        DataItemBuffer dataItems = Wearable.DataApi.getDataItems(getGoogleApiClient(), createUri(PATH_SCREEN_INFO)).await();
+        try {
+            if (!dataItems.getStatus().isSuccess()) {
+                Log.w("Could not get the screen info: " + dataItems.getStatus());
+                return null;
+            }
+            // There should only be one watch, but we iterate to be safe
+            for (DataItem dataItem : dataItems) {
+                ScreenInfo res = ScreenInfo.readFrom(DataMapItem.fromDataItem(dataItem).getDataMap());
+                if (res != null) return res;
+            }
+            return null;
+        } finally {
+            dataItems.release();
+        }
     }
 
 
@@ -121,35 +202,42 @@ public class WearHelper {
         return new Uri.Builder().scheme("wear").path(path).build();
     }
 
-    private static Asset createAssetFromBitmap(Bitmap bitmap) {
-        // First resize the bitmap to a reasonable size
-        bitmap = createSmallerBitmap(bitmap, MAX_BITMAP_DIMEN, MAX_BITMAP_DIMEN);
+    private static Asset createAssetFromBitmap(Bitmap bitmap, @Nullable ScreenInfo screenInfo, int quality) {
+        if (screenInfo == null) {
+            // Unknown screen: resize the bitmap to a reasonable size
+            bitmap = createSmallerBitmap(bitmap, MAX_BITMAP_DIMEN, MAX_BITMAP_DIMEN);
+        } else {
+            // Resize the bitmap to the size it will be drawn at on the watch (fitted in the screen), so it doesn't have to be rescaled there
+            bitmap = createFittedBitmap(bitmap, screenInfo.width, screenInfo.height);
+        }
         // Now convert it to an asset
         ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, byteStream);
+        bitmap.compress(Bitmap.CompressFormat.WEBP, quality, byteStream);
+        Log.d("Encoded " + bitmap.getWidth() + "x" + bitmap.getHeight() + " to " + byteStream.size() + " bytes");
         return Asset.createFromBytes(byteStream.toByteArray());
     }
 
     @WorkerThread
     public Bitmap loadBitmapFromAsset(Asset asset) {
-        DataApi.GetFdForAssetResult fd = Wearable.DataApi.getFdForAsset(mGoogleApiClient, asset).await();
+        DataApi.GetFdForAssetResult fd = Wearable.DataApi.getFdForAsset(getGoogleApiClient(), asset).await();
         InputStream inputStream = fd.getInputStream();
         return BitmapFactory.decodeStream(inputStream);
     }
 
+    /**
+     * Opens the given asset for reading, without loading it in memory.  The caller is responsible for closing the returned descriptor.
+     *
+     * @return the descriptor, or {@code null} if the asset could not be opened.
+     */
     @WorkerThread
-    public byte[] loadDataFromAsset(Asset asset) {
-        DataApi.GetFdForAssetResult fd = Wearable.DataApi.getFdForAsset(mGoogleApiClient, asset).await();
-        InputStream inputStream = fd.getInputStream();
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        try {
-            IoUtil.copy(inputStream, byteArrayOutputStream);
-        } catch (IOException e) {
-            // Should never happen
-            Log.e("Could not read from asset", e);
+    @Nullable
+    public ParcelFileDescriptor openAsset(Asset asset) {
+        DataApi.GetFdForAssetResult fd = Wearable.DataApi.getFdForAsset(getGoogleApiClient(), asset).await();
+        if (!fd.getStatus().isSuccess()) {
+            Log.w("Could not open asset: " + fd.getStatus());
             return null;
         }
-        return byteArrayOutputStream.toByteArray();
+        return fd.getFdForRead();
     }
 
     private static Bitmap createSmallerBitmap(Bitmap src, int maxWidth, int maxHeight) {
@@ -160,17 +248,19 @@ public class WearHelper {
             // The source is already smaller than the wanted dimens, return it 'as is'
             return src;
         }
-        int dstWidth;
-        int dstHeight;
-        if (srcWidth < srcHeight) {
-            dstHeight = maxHeight;
-            float ratio = srcWidth / (float) srcHeight;
-            dstWidth = (int) (dstHeight * ratio);
-        } else {
-            dstWidth = maxWidth;
-            float ratio = srcHeight / (float) srcWidth;
-            dstHeight = (int) (dstWidth * ratio);
-        }
+        return createFittedBitmap(src, maxWidth, maxHeight);
+    }
+
+    /**
+     * Scales (up or down) the given bitmap so that it fits exactly in the given size, keeping its aspect ratio.
+     */
+    private static Bitmap createFittedBitmap(Bitmap src, int maxWidth, int maxHeight) {
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        float scale = Math.min(maxWidth / (float) srcWidth, maxHeight / (float) srcHeight);
+        int dstWidth = Math.max(1, Math.round(srcWidth * scale));
+        int dstHeight = Math.max(1, Math.round(srcHeight * scale));
+        if (dstWidth == srcWidth && dstHeight == srcHeight) return src;
         Log.d("dstWidth=" + dstWidth + " dstHeight=" + dstHeight);
         return Bitmap.createScaledBitmap(src, dstWidth, dstHeight, true);
     }
@@ -0,0 +1,234 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.core.clock;
+
+import java.util.TimeZone;
+
+/**
+ * Decodes a time into the local hour, minute, second and date fields with integer arithmetic, as a cheap replacement for
+ * {@link java.util.Calendar#setTimeInMillis(long)} followed by {@link java.util.Calendar#get(int)} calls.<br/>
+ * The UTC offset of the time zone is cached, along with the range of times it is valid for (from the previous DST or zone transition to the
+ * next one): it is only computed again when the time zone changes or when a time outside of this range is set.  A time slightly before the
+ * last one (e.g. after a tick that fired early) doesn't compute it again.
+ */
+public class WallClock {
+    private static final long SECOND_MS = 1000;
+    private static final long MINUTE_MS = 60 * SECOND_MS;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+
+    /**
+     * Step used to look for the previous and next transitions.  Two transitions closer than this could be missed.
+     */
+    private static final long TRANSITION_PROBE_STEP_MS = 6 * HOUR_MS;
+
+    /**
+     * How far to look for the previous and next transitions.  If none is found, the offset is considered valid up to this far.
+     */
+    private static final long TRANSITION_PROBE_HORIZON_MS = 400 * DAY_MS;
+
+    private TimeZone mTimeZone;
+    private int mOffsetMs;
+    private long mOffsetValidFromMs = Long.MAX_VALUE;
+    private long mOffsetValidUntilMs = Long.MIN_VALUE;
+
+    private long mTimeMs;
+    private long mEpochDay;
+    private int mMillisOfDay;
+    private int mHourOfDay;
+    private int mMinute;
+    private int mSecond;
+    private int mYear;
+    private int mMonth;
+    private int mDayOfMonth;
+    private int mDayOfWeek;
+
+    public WallClock(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * Sets the time zone.  The fields are not updated until the next call to {@link #setTimeMillis(long)}.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mOffsetValidFromMs = Long.MAX_VALUE;
+        mOffsetValidUntilMs = Long.MIN_VALUE;
+    }
+
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    public void setTimeMillis(long timeMs) {
+        mTimeMs = timeMs;
+        if (timeMs < mOffsetValidFromMs || timeMs >= mOffsetValidUntilMs) updateOffset(timeMs);
+
+        long localMs = timeMs + mOffsetMs;
+        long epochDay = floorDiv(localMs, DAY_MS);
+        int msOfDay = (int) (localMs - epochDay * DAY_MS);
+        mEpochDay = epochDay;
+        mMillisOfDay = msOfDay;
+        mHourOfDay = (int) (msOfDay / HOUR_MS);
+        mMinute = (int) (msOfDay / MINUTE_MS % 60);
+        mSecond = (int) (msOfDay / SECOND_MS % 60);
+
+        // Civil date from the number of days since 1970-01-01 (proleptic Gregorian calendar)
+        long z = epochDay + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        mDayOfMonth = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        mMonth = (int) (monthIndex < 10 ? monthIndex + 2 : monthIndex - 10);
+        mYear = (int) (yearOfEra + era * 400 + (mMonth <= 1 ? 1 : 0));
+
+        // 1970-01-01 was a Thursday
+        mDayOfWeek = (int) floorMod(epochDay + 4, 7) + 1;
+    }
+
+    private void updateOffset(long timeMs) {
+        TimeZone timeZone = mTimeZone;
+        int offsetMs = timeZone.getOffset(timeMs);
+        mOffsetMs = offsetMs;
+        mOffsetValidFromMs = findLastTimeWithOffset(timeZone, offsetMs, timeMs, -TRANSITION_PROBE_STEP_MS);
+        mOffsetValidUntilMs = findLastTimeWithOffset(timeZone, offsetMs, timeMs, TRANSITION_PROBE_STEP_MS) + 1;
+    }
+
+    /**
+     * Walks from {@code timeMs} by steps of {@code stepMs} (forwards if positive, backwards if negative), up to
+     * {@link #TRANSITION_PROBE_HORIZON_MS}, looking for a transition.
+     *
+     * @return the last time in that direction that still has the given offset, or the time at the horizon if there is no transition.
+     */
+    private static long findLastTimeWithOffset(TimeZone timeZone, int offsetMs, long timeMs, long stepMs) {
+        long sameMs = timeMs;
+        for (long distanceMs = Math.abs(stepMs); distanceMs <= TRANSITION_PROBE_HORIZON_MS; distanceMs += Math.abs(stepMs)) {
+            long probeMs = sameMs + stepMs;
+            if (timeZone.getOffset(probeMs) != offsetMs) {
+                // The transition is between sameMs and probeMs: find it exactly
+                long otherMs = probeMs;
+                while (Math.abs(otherMs - sameMs) > 1) {
+                    long middleMs = sameMs + (otherMs - sameMs) / 2;
+                    if (timeZone.getOffset(middleMs) == offsetMs) {
+                        sameMs = middleMs;
+                    } else {
+                        otherMs = middleMs;
+                    }
+                }
+                return sameMs;
+            }
+            sameMs = probeMs;
+        }
+        return sameMs;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) q--;
+        return q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    public long getTimeMillis() {
+        return mTimeMs;
+    }
+
+    /**
+     * @return the UTC offset at the current time, in milliseconds.
+     */
+    public int getOffsetMs() {
+        return mOffsetMs;
+    }
+
+    /**
+     * @return the time of the previous transition, before which the offset will be computed again.
+     */
+    public long getOffsetValidFromMs() {
+        return mOffsetValidFromMs;
+    }
+
+    /**
+     * @return the time of the next transition, after which the offset will be computed again.
+     */
+    public long getOffsetValidUntilMs() {
+        return mOffsetValidUntilMs;
+    }
+
+    /**
+     * @return the number of days between 1970-01-01 and the local date.
+     */
+    public long getEpochDay() {
+        return mEpochDay;
+    }
+
+    /**
+     * @return the number of milliseconds since local midnight.
+     */
+    public int getMillisOfDay() {
+        return mMillisOfDay;
+    }
+
+    /**
+     * @return the hour of the day, between 0 and 23 (same as {@link java.util.Calendar#HOUR_OF_DAY}).
+     */
+    public int getHourOfDay() {
+        return mHourOfDay;
+    }
+
+    public int getMinute() {
+        return mMinute;
+    }
+
+    public int getSecond() {
+        return mSecond;
+    }
+
+    public int getYear() {
+        return mYear;
+    }
+
+    /**
+     * @return the month, between 0 and 11 (same as {@link java.util.Calendar#MONTH}).
+     */
+    public int getMonth() {
+        return mMonth;
+    }
+
+    public int getDayOfMonth() {
+        return mDayOfMonth;
+    }
+
+    /**
+     * @return the day of the week, between {@link java.util.Calendar#SUNDAY} and {@link java.util.Calendar#SATURDAY}.
+     */
+    public int getDayOfWeek() {
+        return mDayOfWeek;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.core.format;
+
+/**
+ * Formats the time into char buffers, without allocating anything.
+ */
+public class TimeFormatter {
+    /**
+     * Maximum length of the text written by {@link #formatHourMinutes(int, int, boolean, char[])}.
+     */
+    public static final int HOUR_MINUTES_MAX_LENGTH = 5;
+
+    /**
+     * Length of the text written by {@link #formatSeconds(int, char[])}.
+     */
+    public static final int SECONDS_LENGTH = 2;
+
+    private static final char[] AM = {'A', 'M'};
+    private static final char[] PM = {'P', 'M'};
+
+    private TimeFormatter() {}
+
+    /**
+     * Formats the hour / minutes as {@code H:mm}.  In 12 hour format, the hour is between 0 and 11.
+     *
+     * @param dest Must be at least {@link #HOUR_MINUTES_MAX_LENGTH} chars long.
+     * @return the number of chars written.
+     */
+    public static int formatHourMinutes(int hourOfDay, int minute, boolean is24HourFormat, char[] dest) {
+        int hour = hourOfDay;
+        if (!is24HourFormat) hour = hour % 12;
+        int len = 0;
+        if (hour >= 10) dest[len++] = (char) ('0' + hour / 10);
+        dest[len++] = (char) ('0' + hour % 10);
+        dest[len++] = ':';
+        dest[len++] = (char) ('0' + minute / 10);
+        dest[len++] = (char) ('0' + minute % 10);
+        return len;
+    }
+
+    /**
+     * Formats the seconds as {@code ss}.
+     *
+     * @param dest Must be at least {@link #SECONDS_LENGTH} chars long.
+     */
+    public static void formatSeconds(int second, char[] dest) {
+        dest[0] = (char) ('0' + second / 10);
+        dest[1] = (char) ('0' + second % 10);
+    }
+
+    /**
+     * Returns the AM/PM indicator for the given hour.  The returned array is shared and must not be modified.
+     */
+    public static char[] getAmPm(int hourOfDay) {
+        if (hourOfDay <= 11) return AM;
+        return PM;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.core.layout;
+
+import org.jraf.android.simplewatchface.core.text.Bounds;
+import org.jraf.android.simplewatchface.core.text.TextMetrics;
+
+/**
+ * Positions of the sprites of the glyphs needed to draw the time ({@code 0}-{@code 9}, {@code :}, {@code A}, {@code P} and {@code M}) in a
+ * glyph atlas, and of the sprites of a text drawn from it.<br/>
+ * The sprites are laid out on one row, each padded by how far its shadow's blur reaches, and separated by an empty gutter.  Rendering and
+ * drawing the atlas is up to the platform.
+ */
+public class GlyphSpriteLayout {
+    public static final char[] GLYPHS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', ':', 'A', 'P', 'M'};
+
+    /**
+     * Position of each glyph's sprite in the atlas.
+     */
+    private final Bounds[] mSpriteBounds = new Bounds[GLYPHS.length];
+
+    /**
+     * Offset of the top left corner of each glyph's sprite, relative to the glyph's origin (on the baseline).
+     */
+    private final int[] mSpriteOffsetsX = new int[GLYPHS.length];
+    private final int[] mSpriteOffsetsY = new int[GLYPHS.length];
+
+    private final float[] mAdvances = new float[GLYPHS.length];
+
+    private final Bounds mGlyphBounds = new Bounds();
+    private int mAtlasWidth;
+    private int mAtlasHeight;
+
+    public GlyphSpriteLayout() {
+        for (int i = 0; i < GLYPHS.length; i++) {
+            mSpriteBounds[i] = new Bounds();
+        }
+    }
+
+    /**
+     * How far the blur of a shadow of the given radius reaches: Skia turns the radius into a sigma of about 0.57735 * radius + 0.5, and the
+     * blur reaches about 3 sigma.
+     */
+    public static int getBlurExtent(float shadowRadius) {
+        if (shadowRadius <= 0) return 0;
+        return (int) Math.ceil(3 * (0.57735f * shadowRadius + 0.5f));
+    }
+
+    /**
+     * Measures the glyphs and positions their sprites.
+     *
+     * @param advances The advance of each glyph of {@link #GLYPHS}.
+     * @param shadowRadius The radius of the shadow drawn with the glyphs (or 0 if there is none), used to leave enough room around each glyph.
+     */
+    public void update(TextMetrics metrics, float[] advances, float shadowRadius) {
+        // Room for the shadow, plus one pixel for antialiasing
+        int blurExtent = getBlurExtent(shadowRadius);
+        int padding = blurExtent + 1;
+        // The blur doesn't stop dead at 3 sigma: an empty gutter between the sprites keeps a glyph's shadow out of its neighbours' sprites
+        int gutter = blurExtent;
+
+        int atlasWidth = 0;
+        int atlasHeight = 0;
+        Bounds glyphBounds = mGlyphBounds;
+        for (int i = 0; i < GLYPHS.length; i++) {
+            metrics.getTextBounds(GLYPHS, i, 1, glyphBounds);
+            mAdvances[i] = advances[i];
+            int spriteWidth = glyphBounds.width() + 2 * padding;
+            int spriteHeight = glyphBounds.height() + 2 * padding;
+            if (i > 0) atlasWidth += gutter;
+            mSpriteBounds[i].set(atlasWidth, 0, atlasWidth + spriteWidth, spriteHeight);
+            mSpriteOffsetsX[i] = glyphBounds.left - padding;
+            mSpriteOffsetsY[i] = glyphBounds.top - padding;
+            atlasWidth += spriteWidth;
+            atlasHeight = Math.max(atlasHeight, spriteHeight);
+        }
+        mAtlasWidth = atlasWidth;
+        mAtlasHeight = atlasHeight;
+    }
+
+    public int getAtlasWidth() {
+        return mAtlasWidth;
+    }
+
+    public int getAtlasHeight() {
+        return mAtlasHeight;
+    }
+
+    /**
+     * @return the x coordinate in the atlas where the glyph at the given index of {@link #GLYPHS} must be drawn to render its sprite.
+     */
+    public int getGlyphOriginX(int glyphIndex) {
+        return mSpriteBounds[glyphIndex].left - mSpriteOffsetsX[glyphIndex];
+    }
+
+    /**
+     * @return the y coordinate (of the baseline) in the atlas where the glyph at the given index of {@link #GLYPHS} must be drawn to render its
+     * sprite.
+     */
+    public int getGlyphOriginY(int glyphIndex) {
+        return mSpriteBounds[glyphIndex].top - mSpriteOffsetsY[glyphIndex];
+    }
+
+    /**
+     * @return whether all the glyphs of the given text have a sprite.
+     */
+    public static boolean contains(char[] text, int length) {
+        for (int i = 0; i < length; i++) {
+            if (indexOf(text[i]) == -1) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Positions the sprite of one glyph of a text.  The glyphs are positioned using their individual advances, so kerning is not applied.  This
+     * doesn't allocate anything.
+     *
+     * @param c The glyph.  Must be in the atlas (see {@link #contains(char[], int)}).
+     * @param originX The origin of the text.
+     * @param originY The origin of the text (on the baseline).
+     * @param advance The advance of the glyphs of the text before this one.
+     * @param src Set to the position of the glyph's sprite in the atlas.
+     * @param dst Set to where the sprite must be drawn.
+     * @return the advance of the glyphs of the text up to and including this one.
+     */
+    public float place(char c, int originX, int originY, float advance, Bounds src, Bounds dst) {
+        int glyphIndex = indexOf(c);
+        Bounds spriteBounds = mSpriteBounds[glyphIndex];
+        src.set(spriteBounds.left, spriteBounds.top, spriteBounds.right, spriteBounds.bottom);
+        int left = originX + Math.round(advance) + mSpriteOffsetsX[glyphIndex];
+        int top = originY + mSpriteOffsetsY[glyphIndex];
+        dst.set(left, top, left + spriteBounds.width(), top + spriteBounds.height());
+        return advance + mAdvances[glyphIndex];
+    }
+
+    /**
+     * @return the index of the given glyph in {@link #GLYPHS}, or -1 if it is not in the atlas.
+     */
+    public static int indexOf(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        switch (c) {
+            case ':':
+                return 10;
+            case 'A':
+                return 11;
+            case 'P':
+                return 12;
+            case 'M':
+                return 13;
+        }
+        return -1;
+    }
+}
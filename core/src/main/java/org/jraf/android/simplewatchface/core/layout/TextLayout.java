@@ -0,0 +1,169 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.core.layout;
+
+import org.jraf.android.simplewatchface.core.text.Bounds;
+import org.jraf.android.simplewatchface.core.text.TextMetrics;
+
+/**
+ * Measures and positions the hour / minutes, seconds, AM/PM and date texts.<br/>
+ * The result is cached: it is only computed again when the displayed texts (except the seconds, which are always measured as "00"), the canvas
+ * width or the screen shape change, or when {@link #invalidate()} is called.
+ */
+public class TextLayout {
+    private static final char[] SECONDS_MEASURE_CHARS = {'0', '0'};
+
+    public final Bounds hourMinutesBounds = new Bounds();
+    public final Bounds secondsBounds = new Bounds();
+    public final Bounds amPmBounds = new Bounds();
+    public final Bounds dateBounds = new Bounds();
+
+    public int hourMinutesX;
+    public int hourMinutesY;
+    public int secondsX;
+    public int secondsY;
+    public int amPmX;
+    public int amPmY;
+    public int dateX;
+    public int dateY;
+
+    /*
+     * Cache key.
+     */
+    private boolean mValid;
+    private char[] mHourMinutesKey = new char[5];
+    private int mHourMinutesLengthKey;
+    private boolean mHasSecondsKey;
+    private char[] mAmPmKey;
+    private String mDateKey;
+    private int mCanvasWidthKey;
+    private boolean mIsRoundKey;
+
+    /**
+     * Forces the next call to {@link #update(int, char[], int, boolean, String, char[], TextMetrics, TextMetrics, TextMetrics, TextMetrics, boolean,
+     * int, int, int) update} to measure everything again.  Must be called when the metrics or the margins change.
+     */
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Measures and positions the texts, unless the cached layout is still valid for these parameters.  This doesn't allocate anything.
+     *
+     * @param amPm Must be 2 chars long, or {@code null} if there is no AM/PM indicator.  Compared by reference.
+     * @return {@code true} if the layout was computed again, {@code false} if the cached one was used.
+     */
+    public boolean update(int canvasWidth, char[] hourMinutes, int hourMinutesLength, boolean hasSeconds, String dateStr, char[] amPm,
+                          TextMetrics hourMinutesMetrics, TextMetrics secondsMetrics, TextMetrics dateMetrics, TextMetrics amPmMetrics,
+                          boolean isRound, int marginBorders, int marginDate, int marginSeconds) {
+        if (mValid && isSameKey(canvasWidth, hourMinutes, hourMinutesLength, hasSeconds, dateStr, amPm, isRound)) {
+            return false;
+        }
+
+        // Measure hour / minutes
+        hourMinutesMetrics.getTextBounds(hourMinutes, 0, hourMinutesLength, hourMinutesBounds);
+        int hourMinutesWidth = hourMinutesBounds.width();
+        int hourMinutesHeight = hourMinutesBounds.height();
+
+        int secondsHeight = 0;
+        if (hasSeconds) {
+            // Measure seconds
+            // Use "00" as a fixed text that's wide
+            secondsMetrics.getTextBounds(SECONDS_MEASURE_CHARS, 0, 2, secondsBounds);
+            secondsHeight = secondsBounds.height();
+        }
+
+        if (amPm != null) {
+            // Measure AM/PM
+            amPmMetrics.getTextBounds(amPm, 0, amPm.length, amPmBounds);
+        }
+
+        // Measure date
+        dateMetrics.getTextBounds(dateStr, dateBounds);
+        int dateWidth = dateBounds.width();
+
+        // Compute coordinates
+        int top;
+        if (isRound) {
+            // Top depends on width
+            int hourMinutesTotalWidth = hourMinutesWidth + Math.max(!hasSeconds ? 0 : marginSeconds + secondsBounds.width(), amPm == null ? 0 :
+                    marginSeconds + amPmBounds.width());
+            int topForWidth = getTopForWidth(canvasWidth, hourMinutesTotalWidth);
+            top = topForWidth + marginBorders;
+
+            // Horizontally centered
+            hourMinutesX = (canvasWidth - hourMinutesTotalWidth) / 2;
+            dateX = (canvasWidth - dateWidth) / 2;
+        } else {
+            // Top is always the border margin
+            top = marginBorders;
+
+            // Left centered
+            hourMinutesX = marginBorders;
+            dateX = marginBorders;
+        }
+        hourMinutesY = top;
+        dateY = hourMinutesY + hourMinutesHeight + marginDate;
+
+        secondsX = hourMinutesX + hourMinutesWidth + marginSeconds;
+        secondsY = hourMinutesY + hourMinutesHeight - secondsHeight;
+
+        amPmX = secondsX;
+        amPmY = hourMinutesY;
+
+        saveKey(canvasWidth, hourMinutes, hourMinutesLength, hasSeconds, dateStr, amPm, isRound);
+        return true;
+    }
+
+    private boolean isSameKey(int canvasWidth, char[] hourMinutes, int hourMinutesLength, boolean hasSeconds, String dateStr, char[] amPm,
+                              boolean isRound) {
+        if (canvasWidth != mCanvasWidthKey || hasSeconds != mHasSecondsKey || isRound != mIsRoundKey || amPm != mAmPmKey) return false;
+        if (hourMinutesLength != mHourMinutesLengthKey) return false;
+        for (int i = 0; i < hourMinutesLength; i++) {
+            if (hourMinutes[i] != mHourMinutesKey[i]) return false;
+        }
+        return dateStr.equals(mDateKey);
+    }
+
+    private void saveKey(int canvasWidth, char[] hourMinutes, int hourMinutesLength, boolean hasSeconds, String dateStr, char[] amPm,
+                         boolean isRound) {
+        if (mHourMinutesKey.length < hourMinutesLength) mHourMinutesKey = new char[hourMinutesLength];
+        System.arraycopy(hourMinutes, 0, mHourMinutesKey, 0, hourMinutesLength);
+        mHourMinutesLengthKey = hourMinutesLength;
+        mHasSecondsKey = hasSeconds;
+        mAmPmKey = amPm;
+        mDateKey = dateStr;
+        mCanvasWidthKey = canvasWidth;
+        mIsRoundKey = isRound;
+        mValid = true;
+    }
+
+    /**
+     * Returns the distance from the top of a circle of the given diameter to the horizontal chord of the given width.
+     */
+    public static int getTopForWidth(int diameter, int width) {
+        return (int) (diameter - Math.sqrt(diameter * diameter - width * width)) / 2;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.core.clock;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class WallClockTest {
+    private static final long MINUTE_MS = 60 * 1000L;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+
+    /**
+     * 2010-01-01T00:00:00Z.
+     */
+    private static final long START_MS = 1262304000000L;
+
+    /**
+     * 2023-01-01T00:00:00Z.
+     */
+    private static final long END_MS = 1672531200000L;
+
+    @Test
+    public void paris() {
+        assertSameAsCalendarAroundTransitions("Europe/Paris");
+    }
+
+    @Test
+    public void newYork() {
+        assertSameAsCalendarAroundTransitions("America/New_York");
+    }
+
+    /**
+     * Lord Howe Island has a 30 minute DST shift.
+     */
+    @Test
+    public void lordHowe() {
+        assertSameAsCalendarAroundTransitions("Australia/Lord_Howe");
+    }
+
+    /**
+     * Apia skipped December 30th 2011 (moving across the date line), and had DST until 2021.
+     */
+    @Test
+    public void apia() {
+        assertSameAsCalendarAroundTransitions("Pacific/Apia");
+    }
+
+    @Test
+    public void apiaSkippedDay() {
+        TimeZone timeZone = TimeZone.getTimeZone("Pacific/Apia");
+        WallClock clock = new WallClock(timeZone);
+        // 2011-12-30T09:59:59Z: still December 29th, 23:59:59 local time
+        clock.setTimeMillis(1325239199000L);
+        assertEquals(29, clock.getDayOfMonth());
+        // One second later, December 31st, 00:00:00 local time
+        clock.setTimeMillis(1325239200000L);
+        assertEquals(31, clock.getDayOfMonth());
+        assertEquals(0, clock.getHourOfDay());
+    }
+
+    @Test
+    public void offsetValidForTheWholePeriod() {
+        CountingTimeZone timeZone = new CountingTimeZone(TimeZone.getTimeZone("Europe/Paris"));
+        WallClock clock = new WallClock(timeZone);
+        // 2017-06-01T12:00:00Z
+        clock.setTimeMillis(1496318400000L);
+        // 2017-03-26T01:00:00Z and 2017-10-29T01:00:00Z
+        assertEquals(1490490000000L, clock.getOffsetValidFromMs());
+        assertEquals(1509238800000L, clock.getOffsetValidUntilMs());
+
+        // Earlier and later times in the same period don't look for the transitions again
+        int offsetCount = timeZone.offsetCount;
+        clock.setTimeMillis(1496318400000L - 200);
+        clock.setTimeMillis(1490490000000L);
+        clock.setTimeMillis(1509238800000L - 1);
+        assertEquals(offsetCount, timeZone.offsetCount);
+
+        // Right before the period, they do
+        clock.setTimeMillis(1490490000000L - 1);
+        assertEquals(1 * HOUR_MS, clock.getOffsetMs());
+        assertEquals(1490490000000L, clock.getOffsetValidUntilMs());
+    }
+
+    @Test
+    public void randomTimes() {
+        Random random = new Random(0);
+        String[] zoneIds = {"Europe/Paris", "America/New_York", "Australia/Lord_Howe", "Pacific/Apia", "Asia/Kolkata", "UTC"};
+        for (String zoneId : zoneIds) {
+            TimeZone timeZone = TimeZone.getTimeZone(zoneId);
+            WallClock clock = new WallClock(timeZone);
+            Calendar calendar = Calendar.getInstance(timeZone);
+            for (int i = 0; i < 20000; i++) {
+                // Between 1970 and 2100, in random order so the cached offset is often stale
+                long timeMs = (long) (random.nextDouble() * 4102444800000L);
+                assertSameAsCalendar(clock, calendar, timeMs);
+            }
+        }
+    }
+
+    /**
+     * Compares the clock to {@link Calendar} every minute in the 3 hours around each offset transition between 2010 and 2023, and every 7
+     * minutes (and a few seconds) in between.
+     */
+    private static void assertSameAsCalendarAroundTransitions(String zoneId) {
+        TimeZone timeZone = TimeZone.getTimeZone(zoneId);
+        WallClock clock = new WallClock(timeZone);
+        Calendar calendar = Calendar.getInstance(timeZone);
+        int transitionCount = 0;
+        for (long timeMs = START_MS; timeMs < END_MS; timeMs += HOUR_MS) {
+            if (timeZone.getOffset(timeMs) != timeZone.getOffset(timeMs + HOUR_MS)) {
+                transitionCount++;
+                for (long t = timeMs - HOUR_MS; t < timeMs + 2 * HOUR_MS; t += MINUTE_MS) {
+                    assertSameAsCalendar(clock, calendar, t);
+                    assertSameAsCalendar(clock, calendar, t + 59999);
+                }
+            }
+        }
+        if (transitionCount == 0) throw new AssertionError(zoneId + ": no transitions found, the test doesn't test anything");
+        for (long timeMs = START_MS; timeMs < END_MS; timeMs += 7 * MINUTE_MS + 13 * 1000) {
+            assertSameAsCalendar(clock, calendar, timeMs);
+        }
+    }
+
+    /**
+     * Counts the calls to {@link #getOffset(long)}.
+     */
+    private static class CountingTimeZone extends TimeZone {
+        private final TimeZone mTimeZone;
+        int offsetCount;
+
+        CountingTimeZone(TimeZone timeZone) {
+            mTimeZone = timeZone;
+        }
+
+        @Override
+        public int getOffset(long date) {
+            offsetCount++;
+            return mTimeZone.getOffset(date);
+        }
+
+        @Override
+        public int getOffset(int era, int year, int month, int day, int dayOfWeek, int milliseconds) {
+            return mTimeZone.getOffset(era, year, month, day, dayOfWeek, milliseconds);
+        }
+
+        @Override
+        public void setRawOffset(int offsetMillis) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getRawOffset() {
+            return mTimeZone.getRawOffset();
+        }
+
+        @Override
+        public boolean useDaylightTime() {
+            return mTimeZone.useDaylightTime();
+        }
+
+        @Override
+        public boolean inDaylightTime(Date date) {
+            return mTimeZone.inDaylightTime(date);
+        }
+    }
+
+    private static void assertSameAsCalendar(WallClock clock, Calendar calendar, long timeMs) {
+        clock.setTimeMillis(timeMs);
+        calendar.setTimeInMillis(timeMs);
+        String message = calendar.getTimeZone().getID() + " " + timeMs;
+        assertEquals(message, calendar.get(Calendar.YEAR), clock.getYear());
+        assertEquals(message, calendar.get(Calendar.MONTH), clock.getMonth());
+        assertEquals(message, calendar.get(Calendar.DAY_OF_MONTH), clock.getDayOfMonth());
+        assertEquals(message, calendar.get(Calendar.DAY_OF_WEEK), clock.getDayOfWeek());
+        assertEquals(message, calendar.get(Calendar.HOUR_OF_DAY), clock.getHourOfDay());
+        assertEquals(message, calendar.get(Calendar.MINUTE), clock.getMinute());
+        assertEquals(message, calendar.get(Calendar.SECOND), clock.getSecond());
+        assertEquals(message, calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET), clock.getOffsetMs());
+    }
+}
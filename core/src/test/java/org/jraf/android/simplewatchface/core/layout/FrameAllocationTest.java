@@ -0,0 +1,135 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.core.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.TimeZone;
+
+import org.jraf.android.simplewatchface.core.clock.WallClock;
+import org.jraf.android.simplewatchface.core.format.TimeFormatter;
+import org.jraf.android.simplewatchface.core.text.Bounds;
+import org.jraf.android.simplewatchface.core.text.TextMetrics;
+import org.junit.Test;
+
+/**
+ * Checks that the per frame work (reading the clock, formatting the time and updating the layout) doesn't allocate anything.
+ */
+public class FrameAllocationTest {
+    private static final int CANVAS_WIDTH = 320;
+
+    /**
+     * A day of frames, one per second.
+     */
+    private static final int FRAME_COUNT = 24 * 60 * 60;
+
+    /**
+     * Measures texts as if all the chars were 10 pixels wide, without allocating.
+     */
+    private static class FakeTextMetrics implements TextMetrics {
+        private final int mHeight;
+
+        FakeTextMetrics(int height) {
+            mHeight = height;
+        }
+
+        @Override
+        public void getTextBounds(char[] text, int index, int count, Bounds bounds) {
+            bounds.set(0, -mHeight, count * 10, 0);
+        }
+
+        @Override
+        public void getTextBounds(String text, Bounds bounds) {
+            bounds.set(0, -mHeight, text.length() * 10, 0);
+        }
+    }
+
+    private final WallClock mClock = new WallClock(TimeZone.getTimeZone("Europe/Paris"));
+    private final TextLayout mTextLayout = new TextLayout();
+    private final char[] mHourMinutesChars = new char[TimeFormatter.HOUR_MINUTES_MAX_LENGTH];
+    private final char[] mSecondsChars = new char[TimeFormatter.SECONDS_LENGTH];
+    private final TextMetrics mHourMinutesMetrics = new FakeTextMetrics(60);
+    private final TextMetrics mSecondsMetrics = new FakeTextMetrics(30);
+    private final TextMetrics mDateMetrics = new FakeTextMetrics(20);
+    private final TextMetrics mAmPmMetrics = new FakeTextMetrics(15);
+
+    /**
+     * The date is formatted once per day, outside of the frames.
+     */
+    private final String[] mDates = {"Sun 1 Jan", "Mon 2 Jan"};
+
+    private int mLayoutCount;
+
+    @Test
+    public void framesDontAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up, so that the code is compiled and the classes are loaded
+        for (int i = 0; i < 10; i++) {
+            drawFrames(false);
+            drawFrames(true);
+        }
+
+        // Reading the allocated bytes may itself allocate: measure that first
+        long overheadStart = threadMXBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadMXBean.getThreadAllocatedBytes(threadId) - overheadStart;
+
+        mLayoutCount = 0;
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        drawFrames(false);
+        drawFrames(true);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - start - overhead;
+
+        // One layout per minute (plus the one when the date changes), per pass
+        assertEquals(2 * (24 * 60 + 1), mLayoutCount);
+        assertEquals("Bytes allocated by " + 2 * FRAME_COUNT + " frames", 0, allocated);
+    }
+
+    /**
+     * Does the per frame work of a day, one frame per second, like in interactive mode.
+     */
+    private void drawFrames(boolean is24HourFormat) {
+        // 2017-01-01T00:00:00+01:00
+        long startMs = 1483225200000L;
+        mTextLayout.invalidate();
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            mClock.setTimeMillis(startMs + i * 1000L);
+            int hourMinutesLength = TimeFormatter.formatHourMinutes(mClock.getHourOfDay(), mClock.getMinute(), is24HourFormat, mHourMinutesChars);
+            TimeFormatter.formatSeconds(mClock.getSecond(), mSecondsChars);
+            char[] amPm = is24HourFormat ? null : TimeFormatter.getAmPm(mClock.getHourOfDay());
+            // Changes once, at the end of the day
+            String dateStr = mDates[i < FRAME_COUNT - 1 ? 0 : 1];
+            boolean layoutChanged = mTextLayout.update(CANVAS_WIDTH, mHourMinutesChars, hourMinutesLength, true, dateStr, amPm,
+                    mHourMinutesMetrics, mSecondsMetrics, mDateMetrics, mAmPmMetrics, true, 10, 5, 5);
+            if (layoutChanged) mLayoutCount++;
+        }
+    }
+}
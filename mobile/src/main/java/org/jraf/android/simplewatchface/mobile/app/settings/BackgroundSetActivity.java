@@ -165,19 +165,23 @@ public class BackgroundSetActivity extends Activity {
             }
 
             // Send the image to the watch, on a background thread because it involves blocking (network) calls
-            new AsyncTask<Void, Void, Void>() {
+            new AsyncTask<Void, Void, Boolean>() {
                 @Override
-                protected Void doInBackground(Void... params) {
+                protected Boolean doInBackground(Void... params) {
                     WearHelper wearHelper = WearHelper.get();
-                    wearHelper.connect(BackgroundSetActivity.this);
-                    wearHelper.putSettings(bitmap);
-                    wearHelper.disconnect();
-                    return null;
+                    if (!wearHelper.connect(BackgroundSetActivity.this)) return false;
+                    try {
+                        wearHelper.putSettings(bitmap);
+                    } finally {
+                        wearHelper.disconnect();
+                    }
+                    return true;
                 }
 
                 @Override
-                protected void onPostExecute(Void aVoid) {
-                    Toast.makeText(BackgroundSetActivity.this, R.string.background_set_success, Toast.LENGTH_LONG).show();
+                protected void onPostExecute(Boolean success) {
+                    Toast.makeText(BackgroundSetActivity.this, success ? R.string.background_set_success : R.string.background_set_fail_cannotConnect,
+                            Toast.LENGTH_LONG).show();
                     finish();
                 }
             }.execute();
@@ -24,6 +24,10 @@
  */
 package org.jraf.android.simplewatchface.wear.app;
 
+import android.os.AsyncTask;
+
+import org.jraf.android.simplewatchface.wear.fonts.TypefaceRegistry;
+import org.jraf.android.simplewatchface.wear.settings.SettingsHelper;
 import org.jraf.android.util.log.Log;
 
 public class Application extends android.app.Application {
@@ -35,5 +39,21 @@ public class Application extends android.app.Application {
 
         // Log
         Log.init(this, TAG);
+
+        // Load the configured fonts now (in the background), so the watch face never has to wait for them
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                SettingsHelper settingsHelper = SettingsHelper.get(Application.this);
+                TypefaceRegistry.get(Application.this).preload(settingsHelper.getFontTime(), settingsHelper.getFontDate());
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        SettingsHelper settingsHelper = SettingsHelper.get(this);
+        TypefaceRegistry.get(this).trimMemory(level, settingsHelper.getFontTime(), settingsHelper.getFontDate());
     }
 }
@@ -25,6 +25,7 @@
 package org.jraf.android.simplewatchface.wear.app.settings;
 
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 
 import com.google.android.gms.wearable.Asset;
 import com.google.android.gms.wearable.DataEvent;
@@ -75,17 +76,18 @@ public class SettingsWearableListenerService extends WearableListenerService {
                 Asset backgroundPictureAsset = dataMap.getAsset(WearHelper.EXTRA_BACKGROUND_PICTURE);
                 if (backgroundPictureAsset != null) {
                     // Blocking
-                    mWearHelper.connect(this);
-                    byte[] bitmapData = mWearHelper.loadDataFromAsset(backgroundPictureAsset);
-                    SettingsHelper.get(this).setBackgroundPicture(bitmapData);
+                    if (!mWearHelper.connect(this)) {
+                        Log.w("Could not connect: ignoring the background picture");
+                        continue;
+                    }
+                    try {
+                        ParcelFileDescriptor backgroundPictureFd = mWearHelper.openAsset(backgroundPictureAsset);
+                        if (backgroundPictureFd != null) SettingsHelper.get(this).setBackgroundPicture(backgroundPictureFd);
+                    } finally {
+                        mWearHelper.disconnect();
+                    }
                 }
             }
         }
     }
-
-    @Override
-    public void onDestroy() {
-        mWearHelper.disconnect();
-        super.onDestroy();
-    }
 }
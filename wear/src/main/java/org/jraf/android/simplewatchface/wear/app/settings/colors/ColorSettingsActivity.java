@@ -72,9 +72,11 @@ public class ColorSettingsActivity extends Activity implements WearableListView.
 
         switch (itemPostion) {
             case 0:
-                settingsHelper.putColorBackground(pickedColor);
-                // Also indicate that we want to use the background color (not the background picture)
-                settingsHelper.setBackgroundPicture(null);
+                settingsHelper.beginTransaction()
+                        .putColorBackground(pickedColor)
+                        // Also indicate that we want to use the background color (not the background picture)
+                        .setBackgroundPicture(null)
+                        .commit();
                 break;
             case 1:
                 settingsHelper.putColorHourMinutes(pickedColor);
@@ -26,6 +26,7 @@ package org.jraf.android.simplewatchface.wear.app.settings.fonts;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Set;
 
 import android.content.Context;
 import android.graphics.Bitmap;
@@ -37,26 +38,43 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import org.jraf.android.simplewatchface.R;
+import org.jraf.android.simplewatchface.wear.fonts.TypefaceRegistry;
 import org.jraf.android.simplewatchface.wear.settings.SettingsHelper;
 import org.jraf.android.simplewatchface.wear.widget.WatchFaceView;
 
 public class FontPagerAdapter extends PagerAdapter {
     private final Context mContext;
     private final SettingsHelper mSettingsHelper;
+    private final TypefaceRegistry mTypefaceRegistry;
     private final FontPickActivity.Mode mMode;
     private ArrayList<String> mFontNameList = new ArrayList<>();
     private boolean mIsRound;
 
+    /**
+     * The background picture is loaded asynchronously: the previews are refreshed once it is ready (or when it changes).
+     */
+    private final SettingsHelper.SettingsChangeListener mSettingsChangeListener = new SettingsHelper.SettingsChangeListener() {
+        @Override
+        public void onSettingsChanged(Set<String> changedKeys) {
+            if (!changedKeys.contains(SettingsHelper.KEY_BACKGROUND_PICTURE)) return;
+            notifyDataSetChanged();
+        }
+    };
+
     public FontPagerAdapter(Context context, FontPickActivity.Mode mode) {
         mContext = context;
         mMode = mode;
         mSettingsHelper = SettingsHelper.get(context);
+        mTypefaceRegistry = TypefaceRegistry.get(context);
         try {
             mFontNameList.addAll(Arrays.asList(mContext.getAssets().list("fonts")));
         } catch (Exception e) {
             // Should never happen
             throw new AssertionError(e);
         }
+        // Load all the fonts in the background, so swiping between them is smooth
+        mTypefaceRegistry.preloadAsync(mFontNameList.toArray(new String[mFontNameList.size()]));
+        mSettingsHelper.addSettingsChangeListener(mSettingsChangeListener);
     }
 
     @Override
@@ -85,12 +103,12 @@ public class FontPagerAdapter extends PagerAdapter {
         Typeface dateTypeface;
         if (mMode == FontPickActivity.Mode.TIME) {
             // Preview the time font
-            timeTypeface = Typeface.createFromAsset(mContext.getAssets(), "fonts/" + mFontNameList.get(position));
-            dateTypeface = Typeface.createFromAsset(mContext.getAssets(), "fonts/" + mSettingsHelper.getFontDate());
+            timeTypeface = mTypefaceRegistry.getTypeface(mFontNameList.get(position));
+            dateTypeface = mTypefaceRegistry.getTypeface(mSettingsHelper.getFontDate());
         } else {
             // Preview the date font
-            timeTypeface = Typeface.createFromAsset(mContext.getAssets(), "fonts/" + mSettingsHelper.getFontTime());
-            dateTypeface = Typeface.createFromAsset(mContext.getAssets(), "fonts/" + mFontNameList.get(position));
+            timeTypeface = mTypefaceRegistry.getTypeface(mSettingsHelper.getFontTime());
+            dateTypeface = mTypefaceRegistry.getTypeface(mFontNameList.get(position));
         }
         watchFaceView.setTimeTypeface(timeTypeface);
         watchFaceView.setDateTypeface(dateTypeface);
@@ -106,6 +124,12 @@ public class FontPagerAdapter extends PagerAdapter {
         return res;
     }
 
+    @Override
+    public int getItemPosition(Object object) {
+        // Instantiate the pages again when the data set changes, so they show the current background picture
+        return POSITION_NONE;
+    }
+
     @Override
     public boolean isViewFromObject(View view, Object object) {
         return view == object;
@@ -123,4 +147,11 @@ public class FontPagerAdapter extends PagerAdapter {
     public void setIsRound(boolean isRound) {
         mIsRound = isRound;
     }
+
+    /**
+     * Must be called when the adapter is not used anymore.
+     */
+    public void destroy() {
+        mSettingsHelper.removeSettingsChangeListener(mSettingsChangeListener);
+    }
 }
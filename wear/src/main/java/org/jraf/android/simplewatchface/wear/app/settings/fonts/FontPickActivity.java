@@ -107,6 +107,12 @@ public class FontPickActivity extends Activity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        mAdapter.destroy();
+        super.onDestroy();
+    }
+
     @OnClick(R.id.btnCancel)
     protected void onCancelClicked() {
         setResult(RESULT_CANCELED);
@@ -104,13 +104,27 @@ public class MainSettingsActivity extends Activity implements WearableListView.C
 
             case 6:
                 // Reset background image
-                SettingsHelper.get(this).setBackgroundPicture(null);
+                SettingsHelper.get(this).beginTransaction().setBackgroundPicture(null).commit();
 
                 intent = new Intent(this, ConfirmationActivity.class);
                 intent.putExtra(ConfirmationActivity.EXTRA_ANIMATION_TYPE, ConfirmationActivity.SUCCESS_ANIMATION);
                 intent.putExtra(ConfirmationActivity.EXTRA_MESSAGE, getString(R.string.settings_resetBackgroundImage_success));
                 startActivity(intent);
 
+                break;
+
+            case 7:
+                // Show / hide seconds
+                SettingsHelper settingsHelper = SettingsHelper.get(this);
+                boolean hideSeconds = !settingsHelper.getHideSeconds();
+                settingsHelper.putHideSeconds(hideSeconds);
+
+                intent = new Intent(this, ConfirmationActivity.class);
+                intent.putExtra(ConfirmationActivity.EXTRA_ANIMATION_TYPE, ConfirmationActivity.SUCCESS_ANIMATION);
+                intent.putExtra(ConfirmationActivity.EXTRA_MESSAGE,
+                        getString(hideSeconds ? R.string.settings_showHideSeconds_hidden : R.string.settings_showHideSeconds_shown));
+                startActivity(intent);
+
                 break;
         }
     }
@@ -170,11 +184,12 @@ public class MainSettingsActivity extends Activity implements WearableListView.C
     }
 
     private void saveColorPresetToPreferences(ColorPreset colorPreset) {
-        SettingsHelper settingsHelper = SettingsHelper.get(this);
-        settingsHelper.putColorBackground(colorPreset.background);
-        settingsHelper.putColorHourMinutes(colorPreset.hourMinutes);
-        settingsHelper.putColorSeconds(colorPreset.seconds);
-        settingsHelper.putColorAmPm(colorPreset.amPm);
-        settingsHelper.putColorDate(colorPreset.date);
+        SettingsHelper.get(this).beginTransaction()
+                .putColorBackground(colorPreset.background)
+                .putColorHourMinutes(colorPreset.hourMinutes)
+                .putColorSeconds(colorPreset.seconds)
+                .putColorAmPm(colorPreset.amPm)
+                .putColorDate(colorPreset.date)
+                .commit();
     }
 }
@@ -25,6 +25,7 @@
 package org.jraf.android.simplewatchface.wear.app.settings.presets;
 
 import java.util.ArrayList;
+import java.util.Set;
 
 import android.content.Context;
 import android.graphics.Bitmap;
@@ -36,6 +37,7 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import org.jraf.android.simplewatchface.R;
+import org.jraf.android.simplewatchface.wear.fonts.TypefaceRegistry;
 import org.jraf.android.simplewatchface.wear.presets.ColorPreset;
 import org.jraf.android.simplewatchface.wear.settings.SettingsHelper;
 import org.jraf.android.simplewatchface.wear.widget.WatchFaceView;
@@ -46,14 +48,27 @@ public class PresetPagerAdapter extends PagerAdapter {
     private ArrayList<ColorPreset> mColorPresetList = new ArrayList<>();
     private boolean mIsRound;
 
+    /**
+     * Whether the first preset is the one made from the background picture.
+     */
+    private boolean mHasBackgroundPicturePreset;
+
+    /**
+     * The background picture is loaded asynchronously: the previews are refreshed once it is ready (or when it changes).
+     */
+    private final SettingsHelper.SettingsChangeListener mSettingsChangeListener = new SettingsHelper.SettingsChangeListener() {
+        @Override
+        public void onSettingsChanged(Set<String> changedKeys) {
+            if (!changedKeys.contains(SettingsHelper.KEY_BACKGROUND_PICTURE)) return;
+            updateBackgroundPicturePreset();
+            notifyDataSetChanged();
+        }
+    };
+
     public PresetPagerAdapter(Context context) {
         mContext = context;
         mSettingsHelper = SettingsHelper.get(context);
         try {
-            Bitmap backgroundPicture = mSettingsHelper.getBackgroundPicture();
-            if (backgroundPicture != null) {
-                mColorPresetList.add(ColorPreset.fromImage(backgroundPicture));
-            }
             mColorPresetList.add(ColorPreset.fromXml(context, R.xml.preset_color_arctic_blue));
             mColorPresetList.add(ColorPreset.fromXml(context, R.xml.preset_color_guillaume_1));
             mColorPresetList.add(ColorPreset.fromXml(context, R.xml.preset_color_guillaume_2));
@@ -71,6 +86,19 @@ public class PresetPagerAdapter extends PagerAdapter {
             // Should never happen
             throw new AssertionError(e);
         }
+        updateBackgroundPicturePreset();
+        mSettingsHelper.addSettingsChangeListener(mSettingsChangeListener);
+    }
+
+    /**
+     * Adds (or updates, or removes) the preset made from the background picture, as the first one.
+     */
+    private void updateBackgroundPicturePreset() {
+        if (mHasBackgroundPicturePreset) mColorPresetList.remove(0);
+        // May be null if it is not loaded yet, in which case the listener is called when it is
+        Bitmap backgroundPicture = mSettingsHelper.getBackgroundPicture();
+        mHasBackgroundPicturePreset = backgroundPicture != null;
+        if (mHasBackgroundPicturePreset) mColorPresetList.add(0, ColorPreset.fromImage(backgroundPicture));
     }
 
     @Override
@@ -97,8 +125,8 @@ public class PresetPagerAdapter extends PagerAdapter {
         watchFaceView.setIsRound(mIsRound);
 
         // Typefaces
-        Typeface timeTypeface = Typeface.createFromAsset(mContext.getAssets(), "fonts/" + mSettingsHelper.getFontTime());
-        Typeface dateTypeface = Typeface.createFromAsset(mContext.getAssets(), "fonts/" + mSettingsHelper.getFontDate());
+        Typeface timeTypeface = TypefaceRegistry.get(mContext).getTypeface(mSettingsHelper.getFontTime());
+        Typeface dateTypeface = TypefaceRegistry.get(mContext).getTypeface(mSettingsHelper.getFontDate());
         watchFaceView.setTimeTypeface(timeTypeface);
         watchFaceView.setDateTypeface(dateTypeface);
 
@@ -113,6 +141,12 @@ public class PresetPagerAdapter extends PagerAdapter {
         return res;
     }
 
+    @Override
+    public int getItemPosition(Object object) {
+        // Instantiate the pages again when the data set changes, so they show the current background picture
+        return POSITION_NONE;
+    }
+
     @Override
     public boolean isViewFromObject(View view, Object object) {
         return view == object;
@@ -131,4 +165,11 @@ public class PresetPagerAdapter extends PagerAdapter {
         mIsRound = isRound;
     }
 
+    /**
+     * Must be called when the adapter is not used anymore.
+     */
+    public void destroy() {
+        mSettingsHelper.removeSettingsChangeListener(mSettingsChangeListener);
+    }
+
 }
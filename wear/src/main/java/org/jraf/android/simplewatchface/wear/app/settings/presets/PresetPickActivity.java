@@ -103,6 +103,12 @@ public class PresetPickActivity extends Activity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        mAdapter.destroy();
+        super.onDestroy();
+    }
+
     @OnClick(R.id.btnCancel)
     protected void onCancelClicked() {
         setResult(RESULT_CANCELED);
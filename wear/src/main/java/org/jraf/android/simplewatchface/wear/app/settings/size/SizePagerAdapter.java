@@ -25,6 +25,7 @@
 package org.jraf.android.simplewatchface.wear.app.settings.size;
 
 import java.util.ArrayList;
+import java.util.Set;
 
 import android.content.Context;
 import android.graphics.Bitmap;
@@ -36,6 +37,7 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import org.jraf.android.simplewatchface.R;
+import org.jraf.android.simplewatchface.wear.fonts.TypefaceRegistry;
 import org.jraf.android.simplewatchface.wear.settings.SettingsHelper;
 import org.jraf.android.simplewatchface.wear.widget.WatchFaceView;
 
@@ -48,6 +50,17 @@ public class SizePagerAdapter extends PagerAdapter {
     private ArrayList<Integer> mSizeList = new ArrayList<>();
     private boolean mIsRound;
 
+    /**
+     * The background picture is loaded asynchronously: the previews are refreshed once it is ready (or when it changes).
+     */
+    private final SettingsHelper.SettingsChangeListener mSettingsChangeListener = new SettingsHelper.SettingsChangeListener() {
+        @Override
+        public void onSettingsChanged(Set<String> changedKeys) {
+            if (!changedKeys.contains(SettingsHelper.KEY_BACKGROUND_PICTURE)) return;
+            notifyDataSetChanged();
+        }
+    };
+
     public SizePagerAdapter(Context context, SizePickActivity.Mode mode) {
         mContext = context;
         mMode = mode;
@@ -55,6 +68,7 @@ public class SizePagerAdapter extends PagerAdapter {
         for (int size = MIN_SIZE; size <= MAX_SIZE; size += 2) {
             mSizeList.add(size);
         }
+        mSettingsHelper.addSettingsChangeListener(mSettingsChangeListener);
     }
 
     @Override
@@ -79,9 +93,9 @@ public class SizePagerAdapter extends PagerAdapter {
         watchFaceView.setIsRound(mIsRound);
 
         // Typefaces
-        Typeface timeTypeface = Typeface.createFromAsset(mContext.getAssets(), "fonts/" + mSettingsHelper.getFontTime());
+        Typeface timeTypeface = TypefaceRegistry.get(mContext).getTypeface(mSettingsHelper.getFontTime());
         watchFaceView.setTimeTypeface(timeTypeface);
-        Typeface dateTypeface = Typeface.createFromAsset(mContext.getAssets(), "fonts/" + mSettingsHelper.getFontDate());
+        Typeface dateTypeface = TypefaceRegistry.get(mContext).getTypeface(mSettingsHelper.getFontDate());
         watchFaceView.setDateTypeface(dateTypeface);
 
         // Sizes
@@ -102,6 +116,12 @@ public class SizePagerAdapter extends PagerAdapter {
         return res;
     }
 
+    @Override
+    public int getItemPosition(Object object) {
+        // Instantiate the pages again when the data set changes, so they show the current background picture
+        return POSITION_NONE;
+    }
+
     @Override
     public boolean isViewFromObject(View view, Object object) {
         return view == object;
@@ -119,4 +139,11 @@ public class SizePagerAdapter extends PagerAdapter {
     public void setIsRound(boolean isRound) {
         mIsRound = isRound;
     }
+
+    /**
+     * Must be called when the adapter is not used anymore.
+     */
+    public void destroy() {
+        mSettingsHelper.removeSettingsChangeListener(mSettingsChangeListener);
+    }
 }
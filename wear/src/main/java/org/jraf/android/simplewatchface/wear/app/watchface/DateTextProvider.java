@@ -0,0 +1,164 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+
+import android.os.AsyncTask;
+import android.text.format.DateFormat;
+import android.text.format.DateUtils;
+
+import org.jraf.android.simplewatchface.core.clock.WallClock;
+
+/**
+ * Provides the date text of a day, formatted with the best pattern for a skeleton in the default locale.<br/>
+ * The text is cached, keyed by the local epoch day, locale and time zone, so it is only formatted once a day.  Shortly before midnight the
+ * text of the next day is formatted on a background thread, so the first frame of the day doesn't have to.
+ */
+class DateTextProvider {
+    /**
+     * How long before midnight the text of the next day is formatted.
+     */
+    private static final long PRECOMPUTE_AHEAD_MS = 5 * DateUtils.MINUTE_IN_MILLIS;
+
+    private static class Entry {
+        final long epochDay;
+        final Locale locale;
+        final TimeZone timeZone;
+        final String text;
+
+        Entry(long epochDay, Locale locale, TimeZone timeZone, String text) {
+            this.epochDay = epochDay;
+            this.locale = locale;
+            this.timeZone = timeZone;
+            this.text = text;
+        }
+
+        boolean matches(long epochDay, Locale locale, TimeZone timeZone) {
+            return this.epochDay == epochDay && this.locale.equals(locale) && this.timeZone == timeZone;
+        }
+    }
+
+    private final String mSkeleton;
+    private final Executor mExecutor;
+    private Entry mCurrent;
+    private volatile Entry mPrecomputed;
+    private long mPrecomputeRequestedDay = Long.MIN_VALUE;
+
+    /*
+     * Parameters of the last precompute request.  Guarded by mPrecomputeRunnable.
+     */
+    private long mPrecomputeEpochDay;
+    private Locale mPrecomputeLocale;
+    private TimeZone mPrecomputeTimeZone;
+    private long mPrecomputeTimeMs;
+
+    /**
+     * Formats the text of the last requested day.  Reused for each request, so requesting doesn't allocate anything on the main thread.
+     */
+    private final Runnable mPrecomputeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long epochDay;
+            Locale locale;
+            TimeZone timeZone;
+            long timeMs;
+            synchronized (this) {
+                epochDay = mPrecomputeEpochDay;
+                locale = mPrecomputeLocale;
+                timeZone = mPrecomputeTimeZone;
+                timeMs = mPrecomputeTimeMs;
+            }
+            mPrecomputed = new Entry(epochDay, locale, timeZone, format(locale, timeZone, mSkeleton, timeMs));
+        }
+    };
+
+    DateTextProvider(String skeleton) {
+        this(skeleton, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * @param executor Where the text of the next day is formatted.
+     */
+    DateTextProvider(String skeleton, Executor executor) {
+        mSkeleton = skeleton;
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns the date text for the current time of {@code clock}.  Must be called from the main thread.  This doesn't allocate anything, except
+     * the first time for a given day, locale and time zone, when the text wasn't formatted ahead.
+     */
+    String getDateText(WallClock clock) {
+        long epochDay = clock.getEpochDay();
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = clock.getTimeZone();
+        Entry current = mCurrent;
+        if (current == null || !current.matches(epochDay, locale, timeZone)) {
+            Entry precomputed = mPrecomputed;
+            if (precomputed != null && precomputed.matches(epochDay, locale, timeZone)) {
+                current = precomputed;
+            } else {
+                current = new Entry(epochDay, locale, timeZone, format(locale, timeZone, mSkeleton, clock.getTimeMillis()));
+            }
+            mCurrent = current;
+        }
+
+        long untilMidnightMs = DateUtils.DAY_IN_MILLIS - clock.getMillisOfDay();
+        if (untilMidnightMs <= PRECOMPUTE_AHEAD_MS && mPrecomputeRequestedDay != epochDay + 1) {
+            mPrecomputeRequestedDay = epochDay + 1;
+            synchronized (mPrecomputeRunnable) {
+                mPrecomputeEpochDay = epochDay + 1;
+                mPrecomputeLocale = locale;
+                mPrecomputeTimeZone = timeZone;
+                // Noon of the next day: far enough from midnight to not be fooled by a DST transition
+                mPrecomputeTimeMs = clock.getTimeMillis() + untilMidnightMs + DateUtils.DAY_IN_MILLIS / 2;
+            }
+            mExecutor.execute(mPrecomputeRunnable);
+        }
+        return current.text;
+    }
+
+    /**
+     * Formats the given time with the best pattern for the skeleton.  Called at most about twice a day, possibly from a background thread.
+     */
+    String format(Locale locale, TimeZone timeZone, String skeleton, long timeMs) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(DateFormat.getBestDateTimePattern(locale, skeleton), locale);
+        dateFormat.setTimeZone(timeZone);
+        return dateFormat.format(timeMs);
+    }
+
+    /**
+     * Forgets the cached texts.  Must be called from the main thread.
+     */
+    void invalidate() {
+        mCurrent = null;
+        mPrecomputed = null;
+        mPrecomputeRequestedDay = Long.MIN_VALUE;
+    }
+}
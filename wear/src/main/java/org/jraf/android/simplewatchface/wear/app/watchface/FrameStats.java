@@ -0,0 +1,161 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import java.io.PrintWriter;
+
+/**
+ * Timing statistics of the frames drawn in one mode (ambient or interactive).<br/>
+ * For each frame, this records how long drawing took.  For the frames drawn for a tick (scheduled, or {@code onTimeTick}), it also records
+ * how late the frame was compared to the time boundary (second or minute) it displays.  Other frames (e.g. after a settings change) are
+ * drawn whenever they are needed, so they have no boundary to be late for.  A tick frame is counted as late when it finishes drawing more
+ * than a threshold after its boundary, and a boundary is counted as skipped when no tick frame was drawn for it while frames were being
+ * drawn continuously.<br/>
+ * This is the only place where frame lateness is measured.
+ */
+class FrameStats {
+    /**
+     * Upper bounds (exclusive, in milliseconds) of the draw duration histogram buckets.  The last bucket holds everything above.
+     */
+    private static final int[] DURATION_BUCKETS_MS = {1, 2, 4, 8, 16, 32, 64};
+
+    private final String mName;
+    private final long mPeriodMs;
+    private final long mLateThresholdMs;
+
+    private final long[] mDurationHistogram = new long[DURATION_BUCKETS_MS.length + 1];
+    private long mFrameCount;
+    private long mTotalDurationNanos;
+    private long mMaxDurationNanos;
+
+    private long mTickFrameCount;
+    private long mTotalLatenessMs;
+    private long mMaxLatenessMs;
+    private long mLateFrameCount;
+    private long mSkippedFrameCount;
+
+    /**
+     * Index (time / period) of the boundary of the last tick frame, or -1 if the frames are not continuous.
+     */
+    private long mLastBoundaryIndex = -1;
+
+    /**
+     * @param periodMs The time between two scheduled frames (1 second or 1 minute).
+     * @param lateThresholdMs How long after its boundary a frame is counted as late.
+     */
+    FrameStats(String name, long periodMs, long lateThresholdMs) {
+        mName = name;
+        mPeriodMs = periodMs;
+        mLateThresholdMs = lateThresholdMs;
+    }
+
+    /**
+     * Records a frame.  This doesn't allocate anything.
+     *
+     * @param displayedTimeMs The time that was displayed.  This can be slightly after the actual time, when the tick fired early.
+     * @param frameEndTimeMs The actual wall clock time at which drawing the frame finished.
+     * @param durationNanos How long drawing the frame took.
+     * @param tick Whether the frame was drawn for a tick.  If not, only its duration is recorded.
+     */
+    synchronized void onFrame(long displayedTimeMs, long frameEndTimeMs, long durationNanos, boolean tick) {
+        // Duration
+        mFrameCount++;
+        mTotalDurationNanos += durationNanos;
+        if (durationNanos > mMaxDurationNanos) mMaxDurationNanos = durationNanos;
+        long durationMs = durationNanos / 1000000;
+        int bucket = 0;
+        while (bucket < DURATION_BUCKETS_MS.length && durationMs >= DURATION_BUCKETS_MS[bucket]) bucket++;
+        mDurationHistogram[bucket]++;
+        if (!tick) return;
+
+        // Lateness, compared to the boundary that was displayed (a frame ready before its boundary is on time)
+        long boundaryIndex = displayedTimeMs / mPeriodMs;
+        long latenessMs = Math.max(0, frameEndTimeMs - boundaryIndex * mPeriodMs);
+        mTickFrameCount++;
+        mTotalLatenessMs += latenessMs;
+        if (latenessMs > mMaxLatenessMs) mMaxLatenessMs = latenessMs;
+        if (latenessMs > mLateThresholdMs) mLateFrameCount++;
+
+        // Skipped boundaries
+        if (mLastBoundaryIndex != -1 && boundaryIndex > mLastBoundaryIndex + 1) {
+            mSkippedFrameCount += boundaryIndex - mLastBoundaryIndex - 1;
+        }
+        mLastBoundaryIndex = boundaryIndex;
+    }
+
+    /**
+     * Indicates that frames will not be drawn continuously (e.g. the watch face is not visible anymore), so the next gap is not counted as
+     * skipped frames.
+     */
+    synchronized void onDiscontinuity() {
+        mLastBoundaryIndex = -1;
+    }
+
+    synchronized void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.print(mName);
+        writer.println(":");
+        writer.print(prefix);
+        writer.print("  frames=");
+        writer.print(mFrameCount);
+        writer.print(" ticks=");
+        writer.print(mTickFrameCount);
+        writer.print(" late=");
+        writer.print(mLateFrameCount);
+        writer.print(" skipped=");
+        writer.println(mSkippedFrameCount);
+        if (mFrameCount == 0) return;
+
+        writer.print(prefix);
+        writer.print("  draw duration: avg=");
+        writer.print(mTotalDurationNanos / mFrameCount / 1000);
+        writer.print("us max=");
+        writer.print(mMaxDurationNanos / 1000);
+        writer.println("us");
+        for (int i = 0; i < mDurationHistogram.length; i++) {
+            writer.print(prefix);
+            writer.print("    ");
+            if (i < DURATION_BUCKETS_MS.length) {
+                writer.print("<");
+                writer.print(DURATION_BUCKETS_MS[i]);
+            } else {
+                writer.print(">=");
+                writer.print(DURATION_BUCKETS_MS[i - 1]);
+            }
+            writer.print("ms: ");
+            writer.println(mDurationHistogram[i]);
+        }
+        if (mTickFrameCount == 0) return;
+
+        writer.print(prefix);
+        writer.print("  lateness: avg=");
+        writer.print(mTotalLatenessMs / mTickFrameCount);
+        writer.print("ms max=");
+        writer.print(mMaxLatenessMs);
+        writer.print("ms (late when >");
+        writer.print(mLateThresholdMs);
+        writer.println("ms)");
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import org.jraf.android.simplewatchface.core.layout.GlyphSpriteLayout;
+import org.jraf.android.simplewatchface.core.text.Bounds;
+
+/**
+ * Pre-rendered sprites of the glyphs needed to draw the time ({@code 0}-{@code 9}, {@code :}, {@code A}, {@code P} and {@code M}), with a given
+ * paint.<br/>
+ * The sprites are rendered once with everything the paint has, including its shadow layer, so drawing the time is just a few bitmap blits
+ * instead of rasterizing (and blurring) text at each frame.  Where each sprite goes is computed by {@link GlyphSpriteLayout}.<br/>
+ * Note: the glyphs are positioned using their individual advances, so kerning between glyphs is not applied.
+ */
+public class GlyphAtlas {
+    private static final char[] GLYPHS = GlyphSpriteLayout.GLYPHS;
+
+    private Bitmap mBitmap;
+    private final GlyphSpriteLayout mLayout = new GlyphSpriteLayout();
+    private final PaintTextMetrics mMetrics = new PaintTextMetrics();
+    private final float[] mAdvances = new float[GLYPHS.length];
+
+    private final Bounds mSrcBounds = new Bounds();
+    private final Bounds mDstBounds = new Bounds();
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+
+    /*
+     * Key of the currently rendered sprites.
+     */
+    private Typeface mTypefaceKey;
+    private float mTextSizeKey;
+    private int mColorKey;
+    private Paint.Style mStyleKey;
+    private boolean mAntiAliasKey;
+    private boolean mAmbientKey;
+
+    /**
+     * Renders the sprites again with the given paint, unless they were already rendered with the same font, size, color, style and ambient
+     * state.
+     *
+     * @param shadowRadius The radius of the paint's shadow layer (or 0 if there is none), used to leave enough room around each glyph.
+     * @return {@code true} if the sprites were rendered again, {@code false} otherwise.
+     */
+    public boolean update(Paint paint, float shadowRadius, boolean ambient) {
+        if (mBitmap != null && paint.getTypeface() == mTypefaceKey && paint.getTextSize() == mTextSizeKey && paint.getColor() == mColorKey &&
+                paint.getStyle() == mStyleKey && paint.isAntiAlias() == mAntiAliasKey && ambient == mAmbientKey) {
+            return false;
+        }
+
+        // Measure all the glyphs
+        for (int i = 0; i < GLYPHS.length; i++) {
+            mAdvances[i] = paint.measureText(GLYPHS, i, 1);
+        }
+        mMetrics.setPaint(paint);
+        GlyphSpriteLayout layout = mLayout;
+        layout.update(mMetrics, mAdvances, shadowRadius);
+
+        // Render them all on one row, separated by a gutter
+        if (mBitmap != null) mBitmap.recycle();
+        mBitmap = Bitmap.createBitmap(layout.getAtlasWidth(), layout.getAtlasHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(mBitmap);
+        for (int i = 0; i < GLYPHS.length; i++) {
+            canvas.drawText(GLYPHS, i, 1, layout.getGlyphOriginX(i), layout.getGlyphOriginY(i), paint);
+        }
+
+        mTypefaceKey = paint.getTypeface();
+        mTextSizeKey = paint.getTextSize();
+        mColorKey = paint.getColor();
+        mStyleKey = paint.getStyle();
+        mAntiAliasKey = paint.isAntiAlias();
+        mAmbientKey = ambient;
+        return true;
+    }
+
+    /**
+     * Draws the given text by blitting the sprites.  The coordinates have the same meaning as for
+     * {@link Canvas#drawText(char[], int, int, float, float, Paint)}.  This doesn't allocate anything.
+     *
+     * @return {@code false} if the atlas is not ready or the text contains a glyph not in the atlas, in which case nothing was drawn.
+     */
+    public boolean drawText(Canvas canvas, char[] text, int length, float x, float y) {
+        if (mBitmap == null || !GlyphSpriteLayout.contains(text, length)) return false;
+        int originX = Math.round(x);
+        int originY = Math.round(y);
+        float advance = 0;
+        Bounds src = mSrcBounds;
+        Bounds dst = mDstBounds;
+        for (int i = 0; i < length; i++) {
+            advance = mLayout.place(text[i], originX, originY, advance, src, dst);
+            mSrcRect.set(src.left, src.top, src.right, src.bottom);
+            mDstRect.set(dst.left, dst.top, dst.right, dst.bottom);
+            canvas.drawBitmap(mBitmap, mSrcRect, mDstRect, null);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Typeface;
+import android.util.SparseArray;
+
+/**
+ * Cache of glyph outlines, for a given paint (font, size and stroke), used to draw outlined text in burn-in protection ambient mode.<br/>
+ * With a {@link Paint.Style#STROKE} paint, drawing text makes the rasterizer extract and stroke the glyph outlines at each frame.  Here each
+ * glyph's {@link Path} is extracted once with {@link Paint#getTextPath(char[], int, int, float, float, Path)} and, unless the stroke is a
+ * hairline, replaced by the outline of its stroke ({@link Paint#getFillPath(Path, Path)}), so drawing it is a simple fill.  Glyphs are added
+ * lazily.<br/>
+ * Note: the glyphs are positioned one char at a time using their individual advances, so the text is not shaped (no kerning, bidi,
+ * ligatures or surrogate pairs).  This is only meant for the time's small fixed set of chars (digits, colon, AM/PM): use
+ * {@link TextPathCache} for localized texts.
+ */
+public class GlyphPathCache {
+    private static class Glyph {
+        final Path path = new Path();
+        float advance;
+    }
+
+    private final SparseArray<Glyph> mGlyphs = new SparseArray<>();
+
+    /**
+     * Paint used to draw the cached paths: a fill copy of the given paint, or the paint itself for hairline strokes.
+     */
+    private final Paint mFillPaint = new Paint();
+    private Paint mDrawPaint;
+    private Paint mSourcePaint;
+
+    private final char[] mChar = new char[1];
+    private final float[] mAdvance = new float[1];
+    private final Path mSourcePath = new Path();
+
+    /*
+     * Key of the currently cached glyphs.
+     */
+    private Typeface mTypefaceKey;
+    private float mTextSizeKey;
+    private float mStrokeWidthKey;
+    private Paint.Style mStyleKey;
+
+    /**
+     * Forgets the cached glyphs if the given paint's font, size or stroke is different from the one they were made with.  The color and
+     * antialias of the paint are taken into account at each call.
+     */
+    public void update(Paint paint) {
+        if (paint.getTypeface() != mTypefaceKey || paint.getTextSize() != mTextSizeKey || paint.getStrokeWidth() != mStrokeWidthKey ||
+                paint.getStyle() != mStyleKey) {
+            mGlyphs.clear();
+            mTypefaceKey = paint.getTypeface();
+            mTextSizeKey = paint.getTextSize();
+            mStrokeWidthKey = paint.getStrokeWidth();
+            mStyleKey = paint.getStyle();
+        }
+        mSourcePaint = paint;
+        mFillPaint.set(paint);
+        mFillPaint.setStyle(Paint.Style.FILL);
+        mFillPaint.clearShadowLayer();
+        // A hairline stroke has no outline: the glyph paths are stroked directly
+        boolean hairline = paint.getStyle() != Paint.Style.FILL && paint.getStrokeWidth() == 0;
+        mDrawPaint = hairline ? paint : mFillPaint;
+    }
+
+    /**
+     * Draws the given text with the cached glyph paths.  The coordinates have the same meaning as for
+     * {@link Canvas#drawText(char[], int, int, float, float, Paint)}.  This only allocates the first time a glyph is drawn.
+     */
+    public void drawText(Canvas canvas, char[] text, int length, float x, float y) {
+        float advance = 0;
+        for (int i = 0; i < length; i++) {
+            advance += drawGlyph(canvas, text[i], x + advance, y);
+        }
+    }
+
+    private float drawGlyph(Canvas canvas, char c, float x, float y) {
+        Glyph glyph = getGlyph(c);
+        if (!glyph.path.isEmpty()) {
+            canvas.translate(x, y);
+            canvas.drawPath(glyph.path, mDrawPaint);
+            canvas.translate(-x, -y);
+        }
+        return glyph.advance;
+    }
+
+    private Glyph getGlyph(char c) {
+        Glyph glyph = mGlyphs.get(c);
+        if (glyph != null) return glyph;
+
+        glyph = new Glyph();
+        Paint paint = mSourcePaint;
+        mChar[0] = c;
+        paint.getTextWidths(mChar, 0, 1, mAdvance);
+        glyph.advance = mAdvance[0];
+        if (mDrawPaint == mFillPaint && paint.getStyle() != Paint.Style.FILL) {
+            paint.getTextPath(mChar, 0, 1, 0, 0, mSourcePath);
+            paint.getFillPath(mSourcePath, glyph.path);
+        } else {
+            paint.getTextPath(mChar, 0, 1, 0, 0, glyph.path);
+        }
+        mGlyphs.put(c, glyph);
+        return glyph;
+    }
+}
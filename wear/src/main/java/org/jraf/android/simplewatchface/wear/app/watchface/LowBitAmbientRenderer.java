@@ -0,0 +1,120 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import java.nio.ByteBuffer;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Renders the content of the watch face for low-bit ambient mode.<br/>
+ * The content of the minute is rendered once into an {@link Bitmap.Config#ALPHA_8 ALPHA_8} bitmap, which is then quantized to 1 bit (every
+ * pixel fully on or fully off), so the output is guaranteed to have no antialiasing artifacts whatever the paints did.  Each ambient frame is
+ * then a single blit of this bitmap with the ambient color, reading 1 byte per pixel instead of the 4 bytes of an ARGB bitmap.<br/>
+ * Note: all the content is drawn with one color (low-bit screens can't show much more anyway).
+ */
+class LowBitAmbientRenderer {
+    /**
+     * Pixels with an alpha at least this are turned on, the others off.
+     */
+    private static final int ALPHA_THRESHOLD = 0x80;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private byte[] mPixels;
+    private ByteBuffer mPixelsBuffer;
+    private boolean mValid;
+
+    private final Paint mBlitPaint = new Paint();
+
+    LowBitAmbientRenderer() {
+        mBlitPaint.setAntiAlias(false);
+        mBlitPaint.setFilterBitmap(false);
+    }
+
+    /**
+     * @return whether the rendered content can be drawn on a surface of the given size.
+     */
+    boolean isValid(int width, int height) {
+        return mValid && mBitmap != null && mBitmap.getWidth() == width && mBitmap.getHeight() == height;
+    }
+
+    void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Returns a cleared canvas to render the content into, (re)creating the bitmap if needed.  The color of the paints used to render is
+     * ignored, only their alpha matters.  {@link #endRender()} must be called once done.
+     */
+    Canvas beginRender(int width, int height) {
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            if (mBitmap != null) mBitmap.recycle();
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+            mCanvas = new Canvas(mBitmap);
+            mPixels = new byte[mBitmap.getByteCount()];
+            mPixelsBuffer = ByteBuffer.wrap(mPixels);
+        }
+        mBitmap.eraseColor(Color.TRANSPARENT);
+        return mCanvas;
+    }
+
+    /**
+     * Quantizes the rendered content to 1 bit.
+     */
+    void endRender() {
+        byte[] pixels = mPixels;
+        mPixelsBuffer.rewind();
+        mBitmap.copyPixelsToBuffer(mPixelsBuffer);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (pixels[i] & 0xFF) >= ALPHA_THRESHOLD ? (byte) 0xFF : 0;
+        }
+        mPixelsBuffer.rewind();
+        mBitmap.copyPixelsFromBuffer(mPixelsBuffer);
+        mValid = true;
+    }
+
+    /**
+     * Draws the rendered content with the given color.
+     */
+    void draw(Canvas canvas, int color) {
+        mBlitPaint.setColor(color);
+        canvas.drawBitmap(mBitmap, 0, 0, mBlitPaint);
+    }
+
+    void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        mCanvas = null;
+        mPixels = null;
+        mPixelsBuffer = null;
+        mValid = false;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import android.graphics.Paint;
+
+/**
+ * The paints, and the matching glyph sprites and text outlines, used to draw the watch face in one mode (ambient or interactive).
+ */
+class PaintSet {
+    final Paint background = new Paint();
+    final Paint hourMinutes = new Paint();
+    final Paint seconds = new Paint();
+    final Paint amPm = new Paint();
+    final Paint date = new Paint();
+
+    final GlyphAtlas hourMinutesAtlas = new GlyphAtlas();
+    final GlyphAtlas secondsAtlas = new GlyphAtlas();
+    final GlyphAtlas amPmAtlas = new GlyphAtlas();
+
+    /**
+     * Whether the glyph path caches must be used instead of the atlases (outlined text in burn-in protection ambient mode).
+     */
+    boolean useGlyphPaths;
+    final GlyphPathCache hourMinutesPaths = new GlyphPathCache();
+    final GlyphPathCache amPmPaths = new GlyphPathCache();
+    final TextPathCache datePath = new TextPathCache();
+
+    PaintSet() {
+        background.setStyle(Paint.Style.FILL_AND_STROKE);
+        background.setStrokeWidth(1);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.annotation.Nullable;
+
+import org.jraf.android.simplewatchface.core.layout.TextLayout;
+
+/**
+ * {@link TextLayout} measuring the texts with {@link Paint}s.<br/>
+ * On top of what {@link TextLayout} checks, the cached layout is also computed again when the text size or typeface of the paints change.
+ */
+public class PaintTextLayout extends TextLayout {
+    private final PaintTextMetrics mHourMinutesMetrics = new PaintTextMetrics();
+    private final PaintTextMetrics mSecondsMetrics = new PaintTextMetrics();
+    private final PaintTextMetrics mDateMetrics = new PaintTextMetrics();
+    private final PaintTextMetrics mAmPmMetrics = new PaintTextMetrics();
+
+    /*
+     * Paints part of the cache key.
+     */
+    private float mHourMinutesTextSizeKey;
+    private Typeface mHourMinutesTypefaceKey;
+    private float mDateTextSizeKey;
+    private Typeface mDateTypefaceKey;
+
+    /**
+     * Measures and positions the texts, unless the cached layout is still valid for these parameters.  This doesn't allocate anything.
+     *
+     * @param amPm Must be 2 chars long, or {@code null} if there is no AM/PM indicator.
+     * @return {@code true} if the layout was computed again, {@code false} if the cached one was used.
+     */
+    public boolean update(int canvasWidth, char[] hourMinutes, int hourMinutesLength, boolean hasSeconds, String dateStr, @Nullable char[] amPm,
+                          Paint hourMinutesPaint, Paint secondsPaint, Paint datePaint, Paint amPmPaint, boolean isRound, int marginBorders,
+                          int marginDate, int marginSeconds) {
+        if (hourMinutesPaint.getTextSize() != mHourMinutesTextSizeKey || hourMinutesPaint.getTypeface() != mHourMinutesTypefaceKey ||
+                datePaint.getTextSize() != mDateTextSizeKey || datePaint.getTypeface() != mDateTypefaceKey) {
+            invalidate();
+            mHourMinutesTextSizeKey = hourMinutesPaint.getTextSize();
+            mHourMinutesTypefaceKey = hourMinutesPaint.getTypeface();
+            mDateTextSizeKey = datePaint.getTextSize();
+            mDateTypefaceKey = datePaint.getTypeface();
+        }
+        mHourMinutesMetrics.setPaint(hourMinutesPaint);
+        mSecondsMetrics.setPaint(secondsPaint);
+        mDateMetrics.setPaint(datePaint);
+        mAmPmMetrics.setPaint(amPmPaint);
+        return update(canvasWidth, hourMinutes, hourMinutesLength, hasSeconds, dateStr, amPm, mHourMinutesMetrics, mSecondsMetrics, mDateMetrics,
+                mAmPmMetrics, isRound, marginBorders, marginDate, marginSeconds);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import org.jraf.android.simplewatchface.core.text.Bounds;
+import org.jraf.android.simplewatchface.core.text.TextMetrics;
+
+/**
+ * {@link TextMetrics} backed by a {@link Paint}.
+ */
+class PaintTextMetrics implements TextMetrics {
+    private final Rect mRect = new Rect();
+    private Paint mPaint;
+
+    void setPaint(Paint paint) {
+        mPaint = paint;
+    }
+
+    @Override
+    public void getTextBounds(char[] text, int index, int count, Bounds bounds) {
+        mPaint.getTextBounds(text, index, count, mRect);
+        bounds.set(mRect.left, mRect.top, mRect.right, mRect.bottom);
+    }
+
+    @Override
+    public void getTextBounds(String text, Bounds bounds) {
+        mPaint.getTextBounds(text, 0, text.length(), mRect);
+        bounds.set(mRect.left, mRect.top, mRect.right, mRect.bottom);
+    }
+}
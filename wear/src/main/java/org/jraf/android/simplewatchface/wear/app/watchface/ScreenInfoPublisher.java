@@ -0,0 +1,78 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.support.annotation.MainThread;
+
+import org.jraf.android.simplewatchface.common.wear.ScreenInfo;
+import org.jraf.android.simplewatchface.common.wear.WearHelper;
+import org.jraf.android.util.log.Log;
+
+/**
+ * Publishes the {@link ScreenInfo} of the watch, so that the phone can send the background picture at the right size.
+ */
+class ScreenInfoPublisher {
+    /**
+     * The last published (or being published) info, to avoid publishing the same one again.  Only accessed from the main thread.
+     */
+    private static ScreenInfo sPublishedScreenInfo;
+
+    private ScreenInfoPublisher() {}
+
+    /**
+     * Publishes the given info in the background, unless it was already published.
+     */
+    @MainThread
+    static void publish(Context context, final ScreenInfo screenInfo) {
+        if (screenInfo.equals(sPublishedScreenInfo)) return;
+        sPublishedScreenInfo = screenInfo;
+        final Context appContext = context.getApplicationContext();
+        // Serial executor: successive infos are published in order
+        new AsyncTask<Void, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(Void... params) {
+                WearHelper wearHelper = WearHelper.get();
+                if (!wearHelper.connect(appContext)) return false;
+                try {
+                    wearHelper.putScreenInfo(screenInfo);
+                } finally {
+                    wearHelper.disconnect();
+                }
+                return true;
+            }
+
+            @Override
+            protected void onPostExecute(Boolean success) {
+                if (!success) {
+                    Log.w("Could not connect: the screen info was not published");
+                    // Try again next time
+                    if (screenInfo.equals(sPublishedScreenInfo)) sPublishedScreenInfo = null;
+                }
+            }
+        }.executeOnExecutor(AsyncTask.SERIAL_EXECUTOR);
+    }
+}
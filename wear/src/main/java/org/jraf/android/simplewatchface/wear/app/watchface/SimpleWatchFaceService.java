@@ -24,35 +24,49 @@
  */
 package org.jraf.android.simplewatchface.wear.app.watchface;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Locale;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.TimeZone;
 
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.database.ContentObserver;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.Message;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.provider.Settings;
+import android.support.annotation.Nullable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.text.format.DateFormat;
+import android.text.format.DateUtils;
 import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
 import org.jraf.android.simplewatchface.R;
+import org.jraf.android.simplewatchface.common.wear.ScreenInfo;
+import org.jraf.android.simplewatchface.core.clock.WallClock;
+import org.jraf.android.simplewatchface.core.format.TimeFormatter;
+import org.jraf.android.simplewatchface.core.text.Bounds;
+import org.jraf.android.simplewatchface.wear.fonts.TypefaceRegistry;
 import org.jraf.android.simplewatchface.wear.settings.SettingsHelper;
+import org.jraf.android.simplewatchface.wear.settings.SettingsSnapshot;
+import org.jraf.android.simplewatchface.wear.trace.EventTrace;
 import org.jraf.android.util.log.Log;
 
 public class SimpleWatchFaceService extends CanvasWatchFaceService {
@@ -66,22 +80,56 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
      */
     public static final float AM_PM_SIZE_FACTOR = .35f;
 
+    private static final String TRACE_BACKGROUND = "SimpleWatchFace background";
+    private static final String TRACE_MEASURE_TEXT = "SimpleWatchFace measure text";
+    private static final String TRACE_DRAW_TEXT = "SimpleWatchFace draw text";
+
+    /**
+     * Successive offsets (in units of {@code wf_burn_in_shift}) of the text in burn-in protection ambient mode, one per minute.
+     */
+    private static final int[][] BURN_IN_SHIFT_PATTERN = {{0, 0}, {1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
     protected SimpleWatchFaceService mService = this;
+    private Engine mEngine;
 
     @Override
     public Engine onCreateEngine() {
-        return new Engine();
+        mEngine = new Engine();
+        return mEngine;
+    }
+
+    /**
+     * Dumps the frame timing statistics and the recent trace events.  Use {@code adb shell dumpsys activity service
+     * org.jraf.android.simplewatchface}.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        Engine engine = mEngine;
+        if (engine == null) {
+            writer.println("No engine");
+        } else {
+            engine.dumpStats("", writer);
+        }
+        EventTrace.dump("", writer);
     }
 
     private class Engine extends CanvasWatchFaceService.Engine {
         /**
-         * Update rate in milliseconds for normal (not ambient) mode.
+         * Interactive frames finished drawing more than this after their second (or minute) are counted as late.
+         */
+        private static final long INTERACTIVE_LATE_THRESHOLD_MS = 100;
+
+        /**
+         * Ambient frames finished drawing more than this after their minute are counted as late.
          */
-        private static final long NORMAL_UPDATE_RATE_MS = 1000;
+        private static final long AMBIENT_LATE_THRESHOLD_MS = 1000;
 
         private boolean mLowBitAmbient;
         private boolean mBurnInProtection;
         private boolean mIsRound;
+        private int mSurfaceWidth;
+        private int mSurfaceHeight;
         private int mChinSize;
 
         private int mColorBackgroundNormal;
@@ -95,54 +143,124 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
         private int mColorAmPmAmbient;
         private Bitmap mBackgroundPicture;
 
+        private Typeface mTimeTypeface;
+        private Typeface mDateTypeface;
+        private float mHourMinutesTextSize;
+        private float mDateTextSize;
+
         private SettingsHelper mSettingsHelper;
 
-        private Paint mBackgroundPaint;
-        private Paint mHourMinutesPaint;
-        private Paint mSecondsPaint;
-        private Paint mAmPmPaint;
-        private Paint mDatePaint;
+        /**
+         * The settings the engine is currently configured with.
+         */
+        private SettingsSnapshot mSettings;
+        private TypefaceRegistry mTypefaceRegistry;
+
+        /**
+         * Both paint sets are always fully built, so switching between ambient and interactive mode only swaps {@link #mPaints}.
+         */
+        private final PaintSet mInteractivePaints = new PaintSet();
+        private final PaintSet mAmbientPaints = new PaintSet();
+        private PaintSet mPaints = mInteractivePaints;
+
+        private int mShadowRadiusBig;
+        private int mShadowRadiusSmall;
+
+        /**
+         * In burn-in protection ambient mode, the text is shifted by up to this many pixels, following {@link #BURN_IN_SHIFT_PATTERN}.
+         */
+        private int mBurnInShift;
 
-        private Calendar mNowCalendar = Calendar.getInstance();
+        /**
+         * Time of the last ambient mode change, until its first frame is drawn (or 0).
+         */
+        private long mAmbientModeChangedNanos;
+        private long mLastAmbientModeChangeLatencyNanos;
+
+        private final FrameStats mInteractiveFrameStats =
+                new FrameStats("Interactive", TickScheduler.Cadence.SECOND.periodMs, INTERACTIVE_LATE_THRESHOLD_MS);
+        private final FrameStats mInteractiveNoSecondsFrameStats =
+                new FrameStats("Interactive (seconds hidden)", TickScheduler.Cadence.MINUTE.periodMs, INTERACTIVE_LATE_THRESHOLD_MS);
+        private final FrameStats mAmbientFrameStats = new FrameStats("Ambient", DateUtils.MINUTE_IN_MILLIS, AMBIENT_LATE_THRESHOLD_MS);
+
+        /**
+         * Whether {@code onTimeTick} asked for a frame that has not been drawn yet.  Only used in ambient mode, where there are no scheduled
+         * ticks.
+         */
+        private boolean mTimeTickFramePending;
+
+        /**
+         * Decodes the time of each frame.
+         */
+        private final WallClock mClock = new WallClock(TimeZone.getDefault());
         private boolean mIs24HourFormat;
-        private SimpleDateFormat mDateFormat;
+        private final DateTextProvider mDateTextProvider = new DateTextProvider("dEEEMMM");
 
-        private int mCachedDateDay;
-        private String mCachedDateStr;
+        /*
+         * Scratch objects, allocated once and reused by every frame.
+         */
+        private final char[] mHourMinutesChars = new char[TimeFormatter.HOUR_MINUTES_MAX_LENGTH];
+        private final char[] mSecondsChars = new char[TimeFormatter.SECONDS_LENGTH];
+        private final PaintTextLayout mTextLayout = new PaintTextLayout();
+
+        /**
+         * Copy of {@link #mBackgroundPicture}, scaled to the size of the surface (and cropped to a circle on round screens), so drawing it is a
+         * simple blit.
+         */
+        private Bitmap mScaledBackgroundPicture;
+
+        /**
+         * Offscreen layer holding everything that only changes once a minute in interactive mode: background, hour / minutes, AM/PM and date.
+         */
+        private Bitmap mMinuteLayer;
+        private Canvas mMinuteLayerCanvas;
+        private boolean mMinuteLayerValid;
+
+        /**
+         * Used instead of drawing the text in ambient mode when the screen is low-bit.
+         */
+        private final LowBitAmbientRenderer mLowBitAmbientRenderer = new LowBitAmbientRenderer();
 
         private int mMarginBorders;
         private int mMarginSeconds;
         private int mMarginDate;
 
+        private boolean mHideSeconds;
+
         /**
-         * Handler to update the time periodically in interactive mode.
+         * Updates the time periodically in interactive mode.
          */
-        private Handler mUpdateTimeHandler = new Handler() {
+        private final TickScheduler mTickScheduler = new TickScheduler(new TickScheduler.Callback() {
             @Override
-            public void handleMessage(Message message) {
-                Log.d();
+            public void onTick() {
+                EventTrace.record(EventTrace.EVENT_TICK);
                 invalidate();
-                if (shouldTimerBeRunning()) {
-                    long timeMs = System.currentTimeMillis();
-                    long delayMs = NORMAL_UPDATE_RATE_MS - (timeMs % NORMAL_UPDATE_RATE_MS);
-                    sendEmptyMessageDelayed(0, delayMs);
-                }
             }
-        };
+        });
+
+        /**
+         * Keys of the settings that changed since the last frame.  Guarded by itself.
+         */
+        private final Set<String> mPendingSettingsKeys = new HashSet<>();
 
         private SettingsHelper.SettingsChangeListener mSettingsChangeListener =
                 new SettingsHelper.SettingsChangeListener() {
                     @Override
-                    public void onSettingsChanged() {
-                        mBackgroundPicture = mSettingsHelper.getBackgroundPicture();
-                        updateColors();
-                        updatePaints();
+                    public void onSettingsChanged(Set<String> changedKeys) {
+                        Log.d("changedKeys=" + changedKeys);
+                        boolean firstPending;
+                        synchronized (mPendingSettingsKeys) {
+                            firstPending = mPendingSettingsKeys.isEmpty();
+                            mPendingSettingsKeys.addAll(changedKeys);
+                        }
+                        // The changes are applied right before the next frame, on the engine's thread
+                        if (firstPending) postInvalidate();
                     }
                 };
 
         @Override
         public void invalidate() {
-            Log.d();
+            EventTrace.record(EventTrace.EVENT_INVALIDATE);
             super.invalidate();
         }
 
@@ -166,22 +284,26 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
             mIs24HourFormat = DateFormat.is24HourFormat(mService);
 
             mSettingsHelper = SettingsHelper.get(SimpleWatchFaceService.this);
+            mTypefaceRegistry = TypefaceRegistry.get(SimpleWatchFaceService.this);
 
             mSettingsHelper.addSettingsChangeListener(mSettingsChangeListener);
-            mBackgroundPicture = mSettingsHelper.getBackgroundPicture();
+            // Starts loading the background picture if needed
+            mSettingsHelper.getBackgroundPicture();
+            mSettings = mSettingsHelper.getSnapshot();
+            mBackgroundPicture = mSettings.backgroundPicture;
+            mHideSeconds = mSettings.hideSeconds;
 
-            // Paints
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-            mBackgroundPaint.setStrokeWidth(1);
+            // Shadows
+            mShadowRadiusBig = getResources().getDimensionPixelSize(R.dimen.wf_shadow_radius_big);
+            mShadowRadiusSmall = getResources().getDimensionPixelSize(R.dimen.wf_shadow_radius_small);
 
-            mHourMinutesPaint = new Paint();
-            mSecondsPaint = new Paint();
-            mAmPmPaint = new Paint();
-            mDatePaint = new Paint();
+            // Burn-in protection
+            mBurnInShift = getResources().getDimensionPixelOffset(R.dimen.wf_burn_in_shift);
 
-            // Colors
+            // Colors, typefaces, sizes
             updateColors();
+            updateTypefaces();
+            updateTextSizes();
             updatePaints();
 
             // Margins
@@ -191,46 +313,71 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
         }
 
         private void updateColors() {
-            mColorBackgroundNormal = mSettingsHelper.getColorBackground();
+            mColorBackgroundNormal = mSettings.colorBackground;
             mColorBackgroundAmbient = getResources().getColor(R.color.background_ambient);
-            mColorTimeNormal = mSettingsHelper.getColorHourMinutes();
+            mColorTimeNormal = mSettings.colorHourMinutes;
             mColorTimeAmbient = getResources().getColor(R.color.time_ambient);
-            mColorDateNormal = mSettingsHelper.getColorDate();
+            mColorDateNormal = mSettings.colorDate;
             mColorDateAmbient = getResources().getColor(R.color.date_ambient);
-            mColorSecondsNormal = mSettingsHelper.getColorSeconds();
-            mColorAmPmNormal = mSettingsHelper.getColorAmPm();
+            mColorSecondsNormal = mSettings.colorSeconds;
+            mColorAmPmNormal = mSettings.colorAmPm;
             mColorAmPmAmbient = getResources().getColor(R.color.amPm_ambient);
         }
 
+        private void updateTypefaces() {
+            mTimeTypeface = mTypefaceRegistry.getTypeface(mSettings.fontTime);
+            mDateTypeface = mTypefaceRegistry.getTypeface(mSettings.fontDate);
+            // The layout depends on the metrics of the fonts
+            mTextLayout.invalidate();
+        }
+
+        private void updateTextSizes() {
+            mHourMinutesTextSize = getPixelSizeFromSpSize(mService, mSettings.sizeTime);
+            mDateTextSize = getPixelSizeFromSpSize(mService, mSettings.sizeDate);
+            mTextLayout.invalidate();
+        }
+
+        /**
+         * Builds both the ambient and interactive paint sets from the current colors, typefaces and sizes.  Must be called when any of these, or
+         * the device properties, change.  The glyph sprites and outlines are only made again if something they depend on changed.
+         */
         private void updatePaints() {
-            boolean ambientMode = isInAmbientMode();
+            invalidateMinuteLayer();
+            mLowBitAmbientRenderer.invalidate();
+
+            updatePaintSet(mInteractivePaints, false, mTimeTypeface, mDateTypeface, mHourMinutesTextSize, mDateTextSize);
+            updatePaintSet(mAmbientPaints, true, mTimeTypeface, mDateTypeface, mHourMinutesTextSize, mDateTextSize);
+            mPaints = isInAmbientMode() ? mAmbientPaints : mInteractivePaints;
+        }
 
+        private void updatePaintSet(PaintSet paints, boolean ambientMode, Typeface timeTypeface, Typeface dateTypeface, float hourMinutesTextSize,
+                                    float dateTextSize) {
             // Colors
             if (ambientMode) {
                 // Ambient mode: we maximize contrast
-                mBackgroundPaint.setColor(mColorBackgroundAmbient);
-                mHourMinutesPaint.setColor(mColorTimeAmbient);
-                mAmPmPaint.setColor(mColorAmPmAmbient);
-                mDatePaint.setColor(mColorDateAmbient);
+                paints.background.setColor(mColorBackgroundAmbient);
+                paints.hourMinutes.setColor(mColorTimeAmbient);
+                paints.amPm.setColor(mColorAmPmAmbient);
+                paints.date.setColor(mColorDateAmbient);
             } else {
                 // Normal mode: colors!
                 if (mBackgroundPicture == null) {
-                    mBackgroundPaint.setColor(mColorBackgroundNormal);
+                    paints.background.setColor(mColorBackgroundNormal);
                 } else {
-                    mBackgroundPaint.setColor(0xFFFFFFFF); // white
+                    paints.background.setColor(0xFFFFFFFF); // white
                 }
-                mHourMinutesPaint.setColor(mColorTimeNormal);
-                mAmPmPaint.setColor(mColorAmPmNormal);
-                mDatePaint.setColor(mColorDateNormal);
+                paints.hourMinutes.setColor(mColorTimeNormal);
+                paints.amPm.setColor(mColorAmPmNormal);
+                paints.date.setColor(mColorDateNormal);
             }
-            mSecondsPaint.setColor(mColorSecondsNormal);
+            paints.seconds.setColor(mColorSecondsNormal);
 
             // Enable antialias for normal mode / disable it for ambient mode + low bit
             boolean antialias = !ambientMode || !mLowBitAmbient;
-            mHourMinutesPaint.setAntiAlias(antialias);
-            mSecondsPaint.setAntiAlias(antialias);
-            mAmPmPaint.setAntiAlias(antialias);
-            mDatePaint.setAntiAlias(antialias);
+            paints.hourMinutes.setAntiAlias(antialias);
+            paints.seconds.setAntiAlias(antialias);
+            paints.amPm.setAntiAlias(antialias);
+            paints.date.setAntiAlias(antialias);
 
             // Set an outline for ambient + burn in protection / disable it otherwise
             boolean outline = ambientMode && mBurnInProtection;
@@ -240,44 +387,54 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
             } else {
                 style = Paint.Style.FILL;
             }
-            mHourMinutesPaint.setStyle(style);
-            mSecondsPaint.setStyle(style);
-            mAmPmPaint.setStyle(style);
-            mDatePaint.setStyle(style);
+            paints.hourMinutes.setStyle(style);
+            paints.seconds.setStyle(style);
+            paints.amPm.setStyle(style);
+            paints.date.setStyle(style);
 
             // Typefaces
-            Typeface timeTypeface = Typeface.createFromAsset(getAssets(), "fonts/" + mSettingsHelper.getFontTime());
-            Typeface dateTypeface = Typeface.createFromAsset(getAssets(), "fonts/" + mSettingsHelper.getFontDate());
-            mHourMinutesPaint.setTypeface(timeTypeface);
-            mSecondsPaint.setTypeface(timeTypeface);
-            mAmPmPaint.setTypeface(timeTypeface);
-            mDatePaint.setTypeface(dateTypeface);
+            paints.hourMinutes.setTypeface(timeTypeface);
+            paints.seconds.setTypeface(timeTypeface);
+            paints.amPm.setTypeface(timeTypeface);
+            paints.date.setTypeface(dateTypeface);
 
             // Sizes
-            float hourMinutesTextSize = getPixelSizeFromSpSize(mService, mSettingsHelper.getSizeTime());
-            mHourMinutesPaint.setTextSize(hourMinutesTextSize);
-            mSecondsPaint.setTextSize(hourMinutesTextSize * SECONDS_SIZE_FACTOR);
-            mAmPmPaint.setTextSize(hourMinutesTextSize * AM_PM_SIZE_FACTOR);
-
-            float dateTextSize = getPixelSizeFromSpSize(mService, mSettingsHelper.getSizeDate());
-            mDatePaint.setTextSize(dateTextSize);
+            paints.hourMinutes.setTextSize(hourMinutesTextSize);
+            paints.seconds.setTextSize(hourMinutesTextSize * SECONDS_SIZE_FACTOR);
+            paints.amPm.setTextSize(hourMinutesTextSize * AM_PM_SIZE_FACTOR);
+            paints.date.setTextSize(dateTextSize);
 
             // Shadows
+            int shadowRadiusBig = 0;
+            int shadowRadiusSmall = 0;
             if (ambientMode) {
-                mHourMinutesPaint.setShadowLayer(0, 0, 0, 0);
-                mSecondsPaint.setShadowLayer(0, 0, 0, 0);
-                mAmPmPaint.setShadowLayer(0, 0, 0, 0);
-                mDatePaint.setShadowLayer(0, 0, 0, 0);
+                paints.hourMinutes.setShadowLayer(0, 0, 0, 0);
+                paints.seconds.setShadowLayer(0, 0, 0, 0);
+                paints.amPm.setShadowLayer(0, 0, 0, 0);
+                paints.date.setShadowLayer(0, 0, 0, 0);
             } else {
                 int shadowColor = 0x80000000; // black
-                int shadowRadiusBig = getResources().getDimensionPixelSize(R.dimen.wf_shadow_radius_big);
+                shadowRadiusBig = mShadowRadiusBig;
                 int shadowDeltaBig = 0;
-                int shadowRadiusSmall = getResources().getDimensionPixelSize(R.dimen.wf_shadow_radius_small);
+                shadowRadiusSmall = mShadowRadiusSmall;
                 int shadowDeltaSmall = 0;
-                mHourMinutesPaint.setShadowLayer(shadowRadiusBig, shadowDeltaBig, shadowDeltaBig, shadowColor);
-                mSecondsPaint.setShadowLayer(shadowRadiusSmall, shadowDeltaSmall, shadowDeltaSmall, shadowColor);
-                mAmPmPaint.setShadowLayer(shadowRadiusSmall, shadowDeltaSmall, shadowDeltaSmall, shadowColor);
-                mDatePaint.setShadowLayer(shadowRadiusSmall, shadowDeltaSmall, shadowDeltaSmall, shadowColor);
+                paints.hourMinutes.setShadowLayer(shadowRadiusBig, shadowDeltaBig, shadowDeltaBig, shadowColor);
+                paints.seconds.setShadowLayer(shadowRadiusSmall, shadowDeltaSmall, shadowDeltaSmall, shadowColor);
+                paints.amPm.setShadowLayer(shadowRadiusSmall, shadowDeltaSmall, shadowDeltaSmall, shadowColor);
+                paints.date.setShadowLayer(shadowRadiusSmall, shadowDeltaSmall, shadowDeltaSmall, shadowColor);
+            }
+
+            // Glyph sprites (only rendered again if something they depend on changed)
+            paints.hourMinutesAtlas.update(paints.hourMinutes, shadowRadiusBig, ambientMode);
+            paints.secondsAtlas.update(paints.seconds, shadowRadiusSmall, ambientMode);
+            paints.amPmAtlas.update(paints.amPm, shadowRadiusSmall, ambientMode);
+
+            // Glyph and date outlines (only extracted again if the font, size or stroke changed)
+            paints.useGlyphPaths = outline;
+            if (outline) {
+                paints.hourMinutesPaths.update(paints.hourMinutes);
+                paints.amPmPaths.update(paints.amPm);
+                paints.datePath.update(paints.date);
             }
         }
 
@@ -287,21 +444,34 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
             mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
             Log.d("mLowBitAmbient=" + mLowBitAmbient + " mBurnInProtection" + mBurnInProtection);
+            mTextLayout.invalidate();
+            updatePaints();
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            Log.d();
-            invalidate();
+            EventTrace.record(EventTrace.EVENT_TIME_TICK);
+            if (mTickScheduler.onTimeTick()) {
+                mTimeTickFramePending = true;
+                invalidate();
+            }
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
             Log.d("inAmbientMode=" + inAmbientMode);
+            mAmbientModeChangedNanos = SystemClock.elapsedRealtimeNanos();
+            mInteractiveFrameStats.onDiscontinuity();
+            mInteractiveNoSecondsFrameStats.onDiscontinuity();
+            mAmbientFrameStats.onDiscontinuity();
 
-            updatePaints();
+            mPaints = inAmbientMode ? mAmbientPaints : mInteractivePaints;
+            // The text layout is shared between both modes (and can be identical in both when the seconds are hidden): the minute may change
+            // in one mode without the other mode's layer knowing
+            mLowBitAmbientRenderer.invalidate();
+            invalidateMinuteLayer();
 
             if (inAmbientMode) {
                 invalidate();
@@ -316,15 +486,17 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
             Log.d("visible=" + visible);
+            mInteractiveFrameStats.onDiscontinuity();
+            mInteractiveNoSecondsFrameStats.onDiscontinuity();
+            mAmbientFrameStats.onDiscontinuity();
 
-            // Time zone
+            // Time zone, locale, 24 hour format
             if (visible) {
-                registerTimeZoneReceiver();
-                // Update time zone now in case it changed while we weren't visible
-                mNowCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                registerTimeChangeReceivers();
+                // Update now in case they changed while we weren't visible
+                onTimeSettingsChanged();
             } else {
-                unregisterReceiver();
+                unregisterTimeChangeReceivers();
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -337,76 +509,167 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
             super.onApplyWindowInsets(insets);
             mIsRound = insets.isRound();
             mChinSize = insets.getSystemWindowInsetBottom();
+            mTextLayout.invalidate();
+            invalidateScaledBackgroundPicture();
+            invalidateMinuteLayer();
             Log.d("mIsRound=" + mIsRound + " mChinSize=" + mChinSize);
+            publishScreenInfo();
+        }
+
+        @Override
+        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            super.onSurfaceChanged(holder, format, width, height);
+            Log.d("width=" + width + " height=" + height);
+            invalidateScaledBackgroundPicture();
+            invalidateMinuteLayer();
+            // Have the picture decoded for this size (until it is ready, the background color is drawn)
+            mSettingsHelper.requestBackgroundPictureSize(width, height);
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            publishScreenInfo();
+        }
+
+        /**
+         * Lets the phone know the size and shape of the screen, so that it sends the background picture at the size it is drawn at.
+         */
+        private void publishScreenInfo() {
+            if (mSurfaceWidth == 0 || mSurfaceHeight == 0) return;
+            int densityDpi = mService.getResources().getDisplayMetrics().densityDpi;
+            ScreenInfoPublisher.publish(mService, new ScreenInfo(mSurfaceWidth, mSurfaceHeight, mIsRound, densityDpi));
         }
 
         /**
-         * Starts the {@link #mUpdateTimeHandler} timer if it should be running and isn't currently
-         * or stops it if it shouldn't be running but currently is.
+         * Sets the cadence of {@link #mTickScheduler} according to the current state.
          */
         private void updateTimer() {
-            Log.d();
-            mUpdateTimeHandler.removeMessages(0);
-            if (shouldTimerBeRunning()) {
-                mUpdateTimeHandler.sendEmptyMessage(0);
-            }
+            TickScheduler.Cadence cadence = getTimerCadence();
+            Log.d("cadence=" + cadence);
+            mTickScheduler.setCadence(cadence);
         }
 
         /**
-         * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer should
-         * only run when we're visible and in interactive mode.
+         * Returns the cadence at which the {@link #mTickScheduler} should tick. It should only tick when we're visible and in interactive mode,
+         * and only once a minute when the seconds are hidden.
          */
-        private boolean shouldTimerBeRunning() {
-            return isVisible() && !isInAmbientMode();
+        private TickScheduler.Cadence getTimerCadence() {
+            if (!isVisible() || isInAmbientMode()) return TickScheduler.Cadence.OFF;
+            if (mHideSeconds) return TickScheduler.Cadence.MINUTE;
+            return TickScheduler.Cadence.SECOND;
         }
 
         @Override
         public void onDestroy() {
-            mUpdateTimeHandler.removeMessages(0);
+            mTickScheduler.setCadence(TickScheduler.Cadence.OFF);
             mSettingsHelper.removeSettingsChangeListener(mSettingsChangeListener);
+            if (mMinuteLayer != null) {
+                mMinuteLayer.recycle();
+                mMinuteLayer = null;
+            }
+            mLowBitAmbientRenderer.release();
+            invalidateScaledBackgroundPicture();
+            if (mEngine == this) mEngine = null;
             super.onDestroy();
         }
 
 
+        //--------------------------------------------------------------------------
+        // region Settings changes.
+        //--------------------------------------------------------------------------
+
+        /**
+         * Applies the settings changes queued since the last frame, in one go.  Must be called on the engine's thread, before drawing.
+         */
+        private void applyPendingSettingsChanges() {
+            Set<String> changedKeys;
+            synchronized (mPendingSettingsKeys) {
+                if (mPendingSettingsKeys.isEmpty()) return;
+                changedKeys = new HashSet<>(mPendingSettingsKeys);
+                mPendingSettingsKeys.clear();
+            }
+            Log.d("Applying changedKeys=" + changedKeys);
+            mSettings = mSettingsHelper.getSnapshot();
+            // Only rebuild what depends on the changed settings, once even if several of them changed
+            boolean colorsChanged = false;
+            boolean typefacesChanged = false;
+            boolean textSizesChanged = false;
+            boolean paintsChanged = false;
+            for (String key : changedKeys) {
+                switch (key) {
+                    case SettingsHelper.KEY_COLOR_BACKGROUND:
+                    case SettingsHelper.KEY_COLOR_HOUR_MINUTES:
+                    case SettingsHelper.KEY_COLOR_SECONDS:
+                    case SettingsHelper.KEY_COLOR_AM_PM:
+                    case SettingsHelper.KEY_COLOR_DATE:
+                        colorsChanged = true;
+                        break;
+
+                    case SettingsHelper.KEY_FONT_TIME:
+                    case SettingsHelper.KEY_FONT_DATE:
+                        typefacesChanged = true;
+                        break;
+
+                    case SettingsHelper.KEY_SIZE_TIME:
+                    case SettingsHelper.KEY_SIZE_DATE:
+                        textSizesChanged = true;
+                        break;
+
+                    case SettingsHelper.KEY_BACKGROUND_PICTURE:
+                        Bitmap backgroundPicture = mSettings.backgroundPicture;
+                        if (backgroundPicture != mBackgroundPicture) {
+                            mBackgroundPicture = backgroundPicture;
+                            invalidateScaledBackgroundPicture();
+                            // The interactive background paint depends on whether there is a picture
+                            paintsChanged = true;
+                        }
+                        break;
+
+                    case SettingsHelper.KEY_HIDE_SECONDS:
+                        boolean hideSeconds = mSettings.hideSeconds;
+                        if (hideSeconds != mHideSeconds) {
+                            mHideSeconds = hideSeconds;
+                            mInteractiveFrameStats.onDiscontinuity();
+                            mInteractiveNoSecondsFrameStats.onDiscontinuity();
+                            updateTimer();
+                        }
+                        break;
+                }
+            }
+            if (colorsChanged) updateColors();
+            if (typefacesChanged) updateTypefaces();
+            if (textSizesChanged) updateTextSizes();
+            if (colorsChanged || typefacesChanged || textSizesChanged || paintsChanged) updatePaints();
+        }
+
+        // endregion
+
+
         //--------------------------------------------------------------------------
         // region Time / date formatting.
         //--------------------------------------------------------------------------
 
-        private String getHourMinutes() {
-            int hour = mNowCalendar.get(Calendar.HOUR_OF_DAY);
-            if (!mIs24HourFormat) hour = hour % 12;
-            StringBuilder res = new StringBuilder(String.valueOf(hour));
-            res.append(':');
-            int minute = mNowCalendar.get(Calendar.MINUTE);
-            if (minute < 10) res.append('0');
-            res.append(String.valueOf(minute));
-            return res.toString();
+        /**
+         * Formats the hour / minutes into {@link #mHourMinutesChars}.
+         *
+         * @return the number of chars written.
+         */
+        private int formatHourMinutes() {
+            return TimeFormatter.formatHourMinutes(mClock.getHourOfDay(), mClock.getMinute(), mIs24HourFormat, mHourMinutesChars);
         }
 
-        private String getSeconds() {
-            StringBuilder res = new StringBuilder();
-            int second = mNowCalendar.get(Calendar.SECOND);
-            if (second < 10) res.append('0');
-            res.append(String.valueOf(second));
-            return res.toString();
+        /**
+         * Formats the seconds into {@link #mSecondsChars}.
+         */
+        private char[] formatSeconds() {
+            TimeFormatter.formatSeconds(mClock.getSecond(), mSecondsChars);
+            return mSecondsChars;
         }
 
-        private String getAmPm() {
-            if (mNowCalendar.get(Calendar.HOUR_OF_DAY) <= 11) return "AM";
-            return "PM";
+        private char[] getAmPm() {
+            return TimeFormatter.getAmPm(mClock.getHourOfDay());
         }
 
         private String getDate() {
-            if (mDateFormat == null) {
-                mDateFormat = new SimpleDateFormat(DateFormat.getBestDateTimePattern(Locale.getDefault(), "dEEEMMM"), Locale.getDefault());
-            }
-            int dayOfMonth = mNowCalendar.get(Calendar.DAY_OF_MONTH);
-            if (mCachedDateDay != dayOfMonth) {
-                // New day: format the date
-                mCachedDateStr = mDateFormat.format(mNowCalendar.getTimeInMillis());
-                mCachedDateDay = dayOfMonth;
-            }
-            return mCachedDateStr;
+            return mDateTextProvider.getDateText(mClock);
         }
 
         // endregion
@@ -418,167 +681,347 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            Log.d();
-            mNowCalendar.setTimeInMillis(System.currentTimeMillis());
+            EventTrace.record(EventTrace.EVENT_DRAW_START);
+            long startNanos = System.nanoTime();
+            applyPendingSettingsChanges();
+            // A tick may have fired slightly before its boundary, so that the frame is on screen in time: draw the boundary's time
+            long nowMs = mTickScheduler.getFrameTimeMs(System.currentTimeMillis());
+            mClock.setTimeMillis(nowMs);
+            // Only the frames drawn for a tick have a boundary to be late for
+            boolean tickFrame = isInAmbientMode() ? mTimeTickFramePending : mTickScheduler.isTickFramePending();
+            mTimeTickFramePending = false;
+            if (mAmbientModeChangedNanos != 0) {
+                // First frame since the mode changed
+                mLastAmbientModeChangeLatencyNanos = SystemClock.elapsedRealtimeNanos() - mAmbientModeChangedNanos;
+                mAmbientModeChangedNanos = 0;
+                EventTrace.record(EventTrace.EVENT_MODE_CHANGE_LATENCY, mLastAmbientModeChangeLatencyNanos / 1000);
+            }
 
             if (isInAmbientMode()) {
                 // Background
+                Trace.beginSection(TRACE_BACKGROUND);
                 canvas.drawColor(mColorBackgroundAmbient);
+                Trace.endSection();
 
                 onDrawAmbient(canvas);
+                long durationNanos = System.nanoTime() - startNanos;
+                mAmbientFrameStats.onFrame(nowMs, System.currentTimeMillis(), durationNanos, tickFrame);
+                EventTrace.record(EventTrace.EVENT_DRAW_END, durationNanos / 1000);
             } else {
-                // Background
-                if (mBackgroundPicture == null) {
-                    canvas.drawColor(mColorBackgroundNormal);
-                } else {
-                    Matrix matrix = new Matrix();
-                    RectF src = new RectF(0, 0, mBackgroundPicture.getWidth(), mBackgroundPicture.getHeight());
-                    matrix.setRectToRect(src, new RectF(bounds), Matrix.ScaleToFit.CENTER);
-                    canvas.drawBitmap(mBackgroundPicture, matrix, mBackgroundPaint);
-                }
-
-                onDrawNormal(canvas);
+                onDrawNormal(canvas, bounds);
+                long durationNanos = System.nanoTime() - startNanos;
+                FrameStats frameStats = mHideSeconds ? mInteractiveNoSecondsFrameStats : mInteractiveFrameStats;
+                frameStats.onFrame(nowMs, System.currentTimeMillis(), durationNanos, tickFrame);
+                mTickScheduler.onFrameDrawn();
+                EventTrace.record(EventTrace.EVENT_DRAW_END, durationNanos / 1000);
             }
         }
 
         private void onDrawAmbient(Canvas canvas) {
-            String hourMinutesStr = getHourMinutes();
-            String secondsStr = null;
+            PaintSet paints = mPaints;
+            int hourMinutesLength = formatHourMinutes();
             String dateStr = getDate();
-            String amPmStr = mIs24HourFormat ? null : getAmPm();
-            drawText(canvas, hourMinutesStr, secondsStr, dateStr, amPmStr, mHourMinutesPaint, mSecondsPaint, mDatePaint,
-                    mAmPmPaint, mIsRound, mMarginBorders, mMarginDate, mMarginSeconds);
+            char[] amPm = mIs24HourFormat ? null : getAmPm();
+            Trace.beginSection(TRACE_MEASURE_TEXT);
+            boolean layoutChanged = mTextLayout.update(canvas.getWidth(), mHourMinutesChars, hourMinutesLength, false, dateStr, amPm,
+                    paints.hourMinutes, paints.seconds, paints.date, paints.amPm, mIsRound, mMarginBorders, mMarginDate, mMarginSeconds);
+            Trace.endSection();
+
+            if (mLowBitAmbient && (layoutChanged || !mLowBitAmbientRenderer.isValid(canvas.getWidth(), canvas.getHeight()))) {
+                // The content only changes once a minute: render it again into the 1 bit layer
+                EventTrace.record(EventTrace.EVENT_RENDER_MINUTE_LAYER);
+                Canvas layerCanvas = mLowBitAmbientRenderer.beginRender(canvas.getWidth(), canvas.getHeight());
+                drawMinuteText(layerCanvas, hourMinutesLength, dateStr, amPm);
+                mLowBitAmbientRenderer.endRender();
+            }
+
+            Trace.beginSection(TRACE_DRAW_TEXT);
+            boolean shifted = mBurnInProtection;
+            if (shifted) {
+                // Shift everything a bit each minute, so the same pixels are not always lit.  The layout is not affected.
+                int[] shift = BURN_IN_SHIFT_PATTERN[(int) (mClock.getTimeMillis() / DateUtils.MINUTE_IN_MILLIS % BURN_IN_SHIFT_PATTERN.length)];
+                canvas.save();
+                canvas.translate(shift[0] * mBurnInShift, shift[1] * mBurnInShift);
+            }
+            if (mLowBitAmbient) {
+                mLowBitAmbientRenderer.draw(canvas, mColorTimeAmbient);
+            } else {
+                drawMinuteText(canvas, hourMinutesLength, dateStr, amPm);
+            }
+            if (shifted) canvas.restore();
+            Trace.endSection();
         }
 
-        private void onDrawNormal(Canvas canvas) {
-            String hourMinutesStr = getHourMinutes();
-            String secondsStr = getSeconds();
+        private void onDrawNormal(Canvas canvas, Rect bounds) {
+            PaintSet paints = mPaints;
+            int hourMinutesLength = formatHourMinutes();
+            boolean hasSeconds = !mHideSeconds;
             String dateStr = getDate();
-            String amPmStr = mIs24HourFormat ? null : getAmPm();
-            drawText(canvas, hourMinutesStr, secondsStr, dateStr, amPmStr, mHourMinutesPaint, mSecondsPaint, mDatePaint,
-                    mAmPmPaint, mIsRound, mMarginBorders, mMarginDate, mMarginSeconds);
+            char[] amPm = mIs24HourFormat ? null : getAmPm();
+            Trace.beginSection(TRACE_MEASURE_TEXT);
+            boolean layoutChanged = mTextLayout.update(canvas.getWidth(), mHourMinutesChars, hourMinutesLength, hasSeconds, dateStr, amPm,
+                    paints.hourMinutes, paints.seconds, paints.date, paints.amPm, mIsRound, mMarginBorders, mMarginDate, mMarginSeconds);
+            Trace.endSection();
+
+            // Everything but the seconds only changes once a minute: it is drawn into the minute layer, which is only rendered again when needed
+            if (layoutChanged || !mMinuteLayerValid || mMinuteLayer == null || mMinuteLayer.getWidth() != bounds.width() ||
+                    mMinuteLayer.getHeight() != bounds.height()) {
+                renderMinuteLayer(bounds, hourMinutesLength, dateStr, amPm);
+            }
+            Trace.beginSection(TRACE_BACKGROUND);
+            canvas.drawBitmap(mMinuteLayer, 0, 0, null);
+            Trace.endSection();
+
+            if (!hasSeconds) return;
+
+            // Draw seconds
+            char[] seconds = formatSeconds();
+            Trace.beginSection(TRACE_DRAW_TEXT);
+            PaintTextLayout textLayout = mTextLayout;
+            drawText(canvas, seconds, seconds.length, textLayout.secondsBounds, textLayout.secondsX, textLayout.secondsY, paints.seconds,
+                    paints.secondsAtlas);
+            Trace.endSection();
+        }
+
+        /**
+         * Renders the background, hour / minutes, AM/PM and date into {@link #mMinuteLayer}, (re)creating it if needed.
+         */
+        private void renderMinuteLayer(Rect bounds, int hourMinutesLength, String dateStr, @Nullable char[] amPm) {
+            EventTrace.record(EventTrace.EVENT_RENDER_MINUTE_LAYER);
+            if (mMinuteLayer == null || mMinuteLayer.getWidth() != bounds.width() || mMinuteLayer.getHeight() != bounds.height()) {
+                if (mMinuteLayer != null) mMinuteLayer.recycle();
+                mMinuteLayer = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+                mMinuteLayerCanvas = new Canvas(mMinuteLayer);
+            }
+            Canvas canvas = mMinuteLayerCanvas;
+
+            // Background
+            Trace.beginSection(TRACE_BACKGROUND);
+            if (mBackgroundPicture == null) {
+                canvas.drawColor(mColorBackgroundNormal);
+            } else {
+                if (mScaledBackgroundPicture == null || mScaledBackgroundPicture.getWidth() != bounds.width() ||
+                        mScaledBackgroundPicture.getHeight() != bounds.height()) {
+                    invalidateScaledBackgroundPicture();
+                    mScaledBackgroundPicture = createScaledBackgroundPicture(mBackgroundPicture, bounds.width(), bounds.height());
+                }
+                canvas.drawBitmap(mScaledBackgroundPicture, 0, 0, mInteractivePaints.background);
+            }
+            Trace.endSection();
+
+            Trace.beginSection(TRACE_DRAW_TEXT);
+            drawMinuteText(canvas, hourMinutesLength, dateStr, amPm);
+            Trace.endSection();
+            mMinuteLayerValid = true;
+        }
+
+        /**
+         * Creates an opaque copy of the given picture, scaled to fit the given size.  RGB_565 is used since the background doesn't need alpha
+         * and is mostly covered by text: it halves the memory and the cost of blitting it, with dithering to keep gradients acceptable.
+         * On round screens, the pixels outside the circle are never visible and are cleared.
+         */
+        private Bitmap createScaledBackgroundPicture(Bitmap picture, int width, int height) {
+            Log.d("width=" + width + " height=" + height + " mIsRound=" + mIsRound);
+            Bitmap res = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            Canvas canvas = new Canvas(res);
+            canvas.drawColor(mIsRound ? 0xFF000000 : mColorBackgroundNormal);
+            if (mIsRound) {
+                Path circle = new Path();
+                circle.addCircle(width / 2f, height / 2f, Math.min(width, height) / 2f, Path.Direction.CW);
+                canvas.clipPath(circle);
+                canvas.drawColor(mColorBackgroundNormal);
+            }
+            Matrix matrix = new Matrix();
+            RectF src = new RectF(0, 0, picture.getWidth(), picture.getHeight());
+            matrix.setRectToRect(src, new RectF(0, 0, width, height), Matrix.ScaleToFit.CENTER);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+            canvas.drawBitmap(picture, matrix, paint);
+            return res;
+        }
+
+        private void invalidateScaledBackgroundPicture() {
+            if (mScaledBackgroundPicture != null) {
+                mScaledBackgroundPicture.recycle();
+                mScaledBackgroundPicture = null;
+            }
+        }
+
+        /**
+         * Forces the minute layer to be rendered again at the next interactive frame.  Must be called when anything drawn into it changes, other
+         * than the displayed texts.
+         */
+        private void invalidateMinuteLayer() {
+            mMinuteLayerValid = false;
+        }
+
+        /**
+         * Draws the hour / minutes, AM/PM and date, at the positions of {@link #mTextLayout}, using the glyph sprites for the time.
+         */
+        private void drawMinuteText(Canvas canvas, int hourMinutesLength, String dateStr, @Nullable char[] amPm) {
+            PaintSet paints = mPaints;
+            PaintTextLayout textLayout = mTextLayout;
+            if (paints.useGlyphPaths) {
+                drawMinuteTextWithGlyphPaths(canvas, hourMinutesLength, dateStr, amPm);
+                return;
+            }
+
+            // Draw hour / minutes
+            drawText(canvas, mHourMinutesChars, hourMinutesLength, textLayout.hourMinutesBounds, textLayout.hourMinutesX, textLayout.hourMinutesY,
+                    paints.hourMinutes, paints.hourMinutesAtlas);
+
+            if (amPm != null) {
+                // Draw AM/PM
+                drawText(canvas, amPm, amPm.length, textLayout.amPmBounds, textLayout.amPmX, textLayout.amPmY, paints.amPm, paints.amPmAtlas);
+            }
+
+            // Draw the date
+            Bounds dateBounds = textLayout.dateBounds;
+            canvas.drawText(dateStr, -dateBounds.left + textLayout.dateX, -dateBounds.top + textLayout.dateY, paints.date);
+        }
+
+        /**
+         * Same as {@link #drawMinuteText(Canvas, int, String, char[])}, with the cached glyph outlines (and date outline) of the paint set.
+         */
+        private void drawMinuteTextWithGlyphPaths(Canvas canvas, int hourMinutesLength, String dateStr, @Nullable char[] amPm) {
+            PaintSet paints = mPaints;
+            PaintTextLayout textLayout = mTextLayout;
+
+            // Draw hour / minutes
+            Bounds bounds = textLayout.hourMinutesBounds;
+            paints.hourMinutesPaths.drawText(canvas, mHourMinutesChars, hourMinutesLength, -bounds.left + textLayout.hourMinutesX,
+                    -bounds.top + textLayout.hourMinutesY);
+
+            if (amPm != null) {
+                // Draw AM/PM
+                bounds = textLayout.amPmBounds;
+                paints.amPmPaths.drawText(canvas, amPm, amPm.length, -bounds.left + textLayout.amPmX, -bounds.top + textLayout.amPmY);
+            }
+
+            // Draw the date
+            bounds = textLayout.dateBounds;
+            paints.datePath.drawText(canvas, dateStr, -bounds.left + textLayout.dateX, -bounds.top + textLayout.dateY);
         }
 
         //endregion
 
 
         //--------------------------------------------------------------------------
-        // region Time zone.
+        // region Stats.
+        //--------------------------------------------------------------------------
+
+        private void dumpStats(String prefix, PrintWriter writer) {
+            writer.print(prefix);
+            writer.print("Last ambient mode change to first frame latency: ");
+            writer.print(mLastAmbientModeChangeLatencyNanos / 1000);
+            writer.println("us");
+            mInteractiveFrameStats.dump(prefix, writer);
+            mInteractiveNoSecondsFrameStats.dump(prefix, writer);
+            mAmbientFrameStats.dump(prefix, writer);
+            mTickScheduler.dump(prefix, writer);
+        }
+
+        // endregion
+
+
+        //--------------------------------------------------------------------------
+        // region Time zone / locale / 24 hour format.
         //--------------------------------------------------------------------------
 
-        private boolean mRegisteredTimeZoneReceiver;
+        private boolean mRegisteredTimeChangeReceivers;
 
-        private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
+        private final BroadcastReceiver mTimeChangeReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mNowCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                Log.d("action=" + intent.getAction());
+                onTimeSettingsChanged();
             }
         };
 
-        private void registerTimeZoneReceiver() {
-            if (mRegisteredTimeZoneReceiver) {
+        private final ContentObserver m24HourFormatObserver = new ContentObserver(new Handler()) {
+            @Override
+            public void onChange(boolean selfChange) {
+                Log.d("24 hour format changed");
+                onTimeSettingsChanged();
+            }
+        };
+
+        /**
+         * Reads the time zone, locale and 24 hour format again.
+         */
+        private void onTimeSettingsChanged() {
+            mClock.setTimeZone(TimeZone.getDefault());
+            mIs24HourFormat = DateFormat.is24HourFormat(mService);
+            mDateTextProvider.invalidate();
+            invalidateMinuteLayer();
+            invalidate();
+        }
+
+        private void registerTimeChangeReceivers() {
+            if (mRegisteredTimeChangeReceivers) {
                 return;
             }
-            mRegisteredTimeZoneReceiver = true;
+            mRegisteredTimeChangeReceivers = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
-            SimpleWatchFaceService.this.registerReceiver(mTimeZoneReceiver, filter);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+            SimpleWatchFaceService.this.registerReceiver(mTimeChangeReceiver, filter);
+            getContentResolver().registerContentObserver(Settings.System.getUriFor(Settings.System.TIME_12_24), false, m24HourFormatObserver);
         }
 
-        private void unregisterReceiver() {
-            if (!mRegisteredTimeZoneReceiver) {
+        private void unregisterTimeChangeReceivers() {
+            if (!mRegisteredTimeChangeReceivers) {
                 return;
             }
-            mRegisteredTimeZoneReceiver = false;
-            SimpleWatchFaceService.this.unregisterReceiver(mTimeZoneReceiver);
+            mRegisteredTimeChangeReceivers = false;
+            SimpleWatchFaceService.this.unregisterReceiver(mTimeChangeReceiver);
+            getContentResolver().unregisterContentObserver(m24HourFormatObserver);
         }
 
         // endregion
     }
 
-    private static int getTopForWidth(int diameter, int width) {
-        return (int) (diameter - Math.sqrt(diameter * diameter - width * width)) / 2;
-    }
-
+    /**
+     * Convenience version of {@link #drawText(Canvas, PaintTextLayout, char[], int, char[], String, char[], Paint, Paint, Paint, Paint, boolean, int,
+     * int, int)} taking {@code String}s.  This allocates, so it should not be used from a watch face frame.
+     */
     public static void drawText(Canvas canvas, String hourMinutesStr, String secondsStr, String dateStr, String amPmStr,
                                 Paint hourMinutesPaint, Paint secondsPaint, Paint datePaint, Paint amPmPaint, boolean isRound,
                                 int marginBorders, int marginDate, int marginSeconds) {
-        int canvasWidth = canvas.getWidth();
-
-        // Measure hour / minutes
-        Rect hourMinutesBounds = new Rect();
-        hourMinutesPaint.getTextBounds(hourMinutesStr, 0, hourMinutesStr.length(), hourMinutesBounds);
-        int hourMinutesWidth = hourMinutesBounds.width();
-        int hourMinutesHeight = hourMinutesBounds.height();
-
-        Rect secondsBounds = null;
-        int secondsHeight = 0;
-        if (secondsStr != null) {
-            // Measure seconds
-            secondsBounds = new Rect();
-            // Use "00" as a fixed text that's wide
-            secondsPaint.getTextBounds("00", 0, 2, secondsBounds);
-            secondsHeight = secondsBounds.height();
-        }
-
-        Rect amPmBounds = null;
-        if (amPmStr != null) {
-            // Measure AM/PM
-            amPmBounds = new Rect();
-            amPmPaint.getTextBounds(amPmStr, 0, amPmStr.length(), amPmBounds);
-        }
-
-        // Measure date
-        Rect dateBounds = new Rect();
-        datePaint.getTextBounds(dateStr, 0, dateStr.length(), dateBounds);
-        int dateWidth = dateBounds.width();
-
-        // Compute coordinates
-        int top;
-        int hourMinutesX;
-        int dateX;
-        if (isRound) {
-            // Top depends on width
-            int hourMinutesTotalWidth = hourMinutesWidth + Math.max(secondsStr == null ? 0 : marginSeconds + secondsBounds.width(), amPmStr == null ? 0 :
-                    marginSeconds + amPmBounds.width());
-            int topForWidth = getTopForWidth(canvasWidth, hourMinutesTotalWidth);
-            top = topForWidth + marginBorders;
-
-            // Horizontally centered
-            hourMinutesX = (canvasWidth - hourMinutesTotalWidth) / 2;
-            dateX = (canvasWidth - dateWidth) / 2;
-        } else {
-            // Top is always the border margin
-            top = marginBorders;
-
-            // Left centered
-            hourMinutesX = marginBorders;
-            dateX = marginBorders;
-        }
-        int hourMinutesY = top;
-        int dateY = hourMinutesY + hourMinutesHeight + marginDate;
-
-        int secondsX = hourMinutesX + hourMinutesWidth + marginSeconds;
-        int secondsY = hourMinutesY + hourMinutesHeight - secondsHeight;
+        drawText(canvas, new PaintTextLayout(), hourMinutesStr.toCharArray(), hourMinutesStr.length(),
+                secondsStr == null ? null : secondsStr.toCharArray(), dateStr, amPmStr == null ? null : amPmStr.toCharArray(), hourMinutesPaint,
+                secondsPaint, datePaint, amPmPaint, isRound, marginBorders, marginDate, marginSeconds);
+    }
 
-        int amPmX = secondsX;
-        int amPmY = hourMinutesY;
+    /**
+     * Draws the hour / minutes, seconds, AM/PM and date.  The texts are only measured again when the given {@code textLayout} is not valid anymore
+     * (see {@link PaintTextLayout}).  This doesn't allocate anything.
+     *
+     * @param seconds Must be 2 chars long, or {@code null} to not draw the seconds.
+     * @param amPm Must be 2 chars long, or {@code null} to not draw the AM/PM indicator.
+     */
+    public static void drawText(Canvas canvas, PaintTextLayout textLayout, char[] hourMinutes, int hourMinutesLength, @Nullable char[] seconds,
+                                String dateStr, @Nullable char[] amPm, Paint hourMinutesPaint, Paint secondsPaint, Paint datePaint,
+                                Paint amPmPaint, boolean isRound, int marginBorders, int marginDate, int marginSeconds) {
+        textLayout.update(canvas.getWidth(), hourMinutes, hourMinutesLength, seconds != null, dateStr, amPm, hourMinutesPaint, secondsPaint,
+                datePaint, amPmPaint, isRound, marginBorders, marginDate, marginSeconds);
 
         // Draw hour / minutes
-        drawText(canvas, hourMinutesStr, hourMinutesBounds, hourMinutesX, hourMinutesY, hourMinutesPaint);
+        drawText(canvas, hourMinutes, hourMinutesLength, textLayout.hourMinutesBounds, textLayout.hourMinutesX, textLayout.hourMinutesY,
+                hourMinutesPaint);
 
-        if (secondsStr != null) {
+        if (seconds != null) {
             // Draw seconds
-            drawText(canvas, secondsStr, secondsBounds, secondsX, secondsY, secondsPaint);
+            drawText(canvas, seconds, seconds.length, textLayout.secondsBounds, textLayout.secondsX, textLayout.secondsY, secondsPaint);
         }
 
-        if (amPmStr != null) {
+        if (amPm != null) {
             // Draw AM/PM
-            drawText(canvas, amPmStr, amPmBounds, amPmX, amPmY, amPmPaint);
+            drawText(canvas, amPm, amPm.length, textLayout.amPmBounds, textLayout.amPmX, textLayout.amPmY, amPmPaint);
         }
 
         // Draw the date
-        drawText(canvas, dateStr, dateBounds, dateX, dateY, datePaint);
+        Bounds dateBounds = textLayout.dateBounds;
+        canvas.drawText(dateStr, -dateBounds.left + textLayout.dateX, -dateBounds.top + textLayout.dateY, datePaint);
     }
 
     private static Rect getTextOffsetBounds(Rect bounds) {
@@ -594,8 +1037,16 @@ public class SimpleWatchFaceService extends CanvasWatchFaceService {
         c.drawRect(rect, paint);
     }
 
-    private static void drawText(Canvas c, String text, Rect textBounds, int x, int y, Paint paint) {
-        c.drawText(text, -textBounds.left + x, -textBounds.top + y, paint);
+    private static void drawText(Canvas c, char[] text, int length, Bounds textBounds, int x, int y, Paint paint) {
+        drawText(c, text, length, textBounds, x, y, paint, null);
+    }
+
+    private static void drawText(Canvas c, char[] text, int length, Bounds textBounds, int x, int y, Paint paint, @Nullable GlyphAtlas glyphAtlas) {
+        int originX = -textBounds.left + x;
+        int originY = -textBounds.top + y;
+        if (glyphAtlas == null || !glyphAtlas.drawText(c, text, length, originX, originY)) {
+            c.drawText(text, 0, length, originX, originY, paint);
+        }
 //        Rect textOffsetBounds = getTextOffsetBounds(textBounds);
 //        textOffsetBounds.offset(x, y);
 //        debugRect(c, textOffsetBounds);
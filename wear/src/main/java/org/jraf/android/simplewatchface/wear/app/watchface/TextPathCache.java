@@ -0,0 +1,100 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Typeface;
+
+/**
+ * Cache of the outline of a whole text, for a given paint (font, size and stroke), used to draw outlined text in burn-in protection ambient
+ * mode.<br/>
+ * Unlike {@link GlyphPathCache}, the path is extracted from the whole text at once with {@link Paint#getTextPath(String, int, int, float,
+ * float, Path)}, so the text is shaped (bidi, ligatures, combining marks, surrogate pairs) as with {@link Canvas#drawText(String, float, float,
+ * Paint)}.  This is meant for texts that rarely change, like the date: the outline is only extracted again when the text changes.
+ */
+public class TextPathCache {
+    private final Path mPath = new Path();
+    private final Path mSourcePath = new Path();
+
+    /**
+     * Paint used to draw the cached path: a fill copy of the given paint, or the paint itself for hairline strokes.
+     */
+    private final Paint mFillPaint = new Paint();
+    private Paint mDrawPaint;
+    private Paint mSourcePaint;
+
+    /*
+     * Key of the cached path.
+     */
+    private String mTextKey;
+    private Typeface mTypefaceKey;
+    private float mTextSizeKey;
+    private float mStrokeWidthKey;
+    private Paint.Style mStyleKey;
+
+    /**
+     * Forgets the cached path if the given paint's font, size or stroke is different from the one it was made with.  The color and
+     * antialias of the paint are taken into account at each call.
+     */
+    public void update(Paint paint) {
+        if (paint.getTypeface() != mTypefaceKey || paint.getTextSize() != mTextSizeKey || paint.getStrokeWidth() != mStrokeWidthKey ||
+                paint.getStyle() != mStyleKey) {
+            mTextKey = null;
+            mTypefaceKey = paint.getTypeface();
+            mTextSizeKey = paint.getTextSize();
+            mStrokeWidthKey = paint.getStrokeWidth();
+            mStyleKey = paint.getStyle();
+        }
+        mSourcePaint = paint;
+        mFillPaint.set(paint);
+        mFillPaint.setStyle(Paint.Style.FILL);
+        mFillPaint.clearShadowLayer();
+        // A hairline stroke has no outline: the text path is stroked directly
+        boolean hairline = paint.getStyle() != Paint.Style.FILL && paint.getStrokeWidth() == 0;
+        mDrawPaint = hairline ? paint : mFillPaint;
+    }
+
+    /**
+     * Draws the given text with the cached path.  The coordinates have the same meaning as for
+     * {@link Canvas#drawText(String, float, float, Paint)}.  This only allocates when the text changes.
+     */
+    public void drawText(Canvas canvas, String text, float x, float y) {
+        if (!text.equals(mTextKey)) {
+            Paint paint = mSourcePaint;
+            if (mDrawPaint == mFillPaint && paint.getStyle() != Paint.Style.FILL) {
+                paint.getTextPath(text, 0, text.length(), 0, 0, mSourcePath);
+                paint.getFillPath(mSourcePath, mPath);
+            } else {
+                paint.getTextPath(text, 0, text.length(), 0, 0, mPath);
+            }
+            mTextKey = text;
+        }
+        canvas.translate(x, y);
+        canvas.drawPath(mPath, mDrawPaint);
+        canvas.translate(-x, -y);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import java.io.PrintWriter;
+
+import android.os.Handler;
+import android.os.Message;
+import android.text.format.DateUtils;
+
+/**
+ * Schedules the ticks that redraw the watch face in interactive mode, at a given {@link Cadence}.<br/>
+ * Ticks target the wall clock boundaries (each second with {@link Cadence#SECOND}, each minute with {@link Cadence#MINUTE}).  The typical
+ * latency between a tick being scheduled and its frame being drawn is learned, and ticks fire early by that amount so the frame is on
+ * screen when the boundary is crossed.  Because of this, frames must be drawn at {@link #getFrameTimeMs(long)} rather than at the current
+ * time, and {@link #onFrameDrawn()} must be called once they are.
+ */
+public class TickScheduler {
+    public enum Cadence {
+        /**
+         * A tick at each second.
+         */
+        SECOND(DateUtils.SECOND_IN_MILLIS),
+
+        /**
+         * A tick at each minute, aligned to {@link android.support.wearable.watchface.WatchFaceService.Engine#onTimeTick() onTimeTick}.
+         */
+        MINUTE(DateUtils.MINUTE_IN_MILLIS),
+
+        /**
+         * No ticks.
+         */
+        OFF(0);
+
+        final long periodMs;
+
+        Cadence(long periodMs) {
+            this.periodMs = periodMs;
+        }
+    }
+
+    public interface Callback {
+        void onTick();
+    }
+
+    private static final int MSG_TICK = 0;
+
+    /**
+     * Ticks never fire earlier than this before their boundary, whatever the measured latency.
+     */
+    private static final long MAX_LEAD_MS = 200;
+
+    /**
+     * Weight of a new sample in the latency estimate is 1 / 2^LATENCY_SMOOTHING_SHIFT.
+     */
+    private static final int LATENCY_SMOOTHING_SHIFT = 3;
+
+    private final Callback mCallback;
+    private Cadence mCadence = Cadence.OFF;
+
+    /**
+     * Index (time / period) of the boundary of the last tick, used to not tick twice for the same boundary.
+     */
+    private long mLastTickIndex = -1;
+
+    /**
+     * Boundary targeted by the next scheduled tick, and the time at which it is scheduled to fire.
+     */
+    private long mNextTargetMs;
+    private long mNextFireMs;
+
+    /**
+     * Boundary targeted by the tick whose frame has not been drawn yet (or 0), and the time at which that tick was scheduled to fire (or 0 if
+     * it wasn't scheduled, i.e. it was aligned to {@code onTimeTick}).  The first tick after a cadence change targets no boundary, so it
+     * leaves these at 0.
+     */
+    private long mPendingTargetMs;
+    private long mPendingFireMs;
+
+    /**
+     * Estimated latency between a scheduled tick and its frame being drawn, in microseconds.
+     */
+    private long mLatencyEstimateUs;
+
+    private final Handler mHandler = new Handler(new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message msg) {
+            tick();
+            return true;
+        }
+    });
+
+    public TickScheduler(Callback callback) {
+        mCallback = callback;
+    }
+
+    public Cadence getCadence() {
+        return mCadence;
+    }
+
+    /**
+     * Sets the cadence, and ticks right away unless it is {@link Cadence#OFF}.
+     */
+    public void setCadence(Cadence cadence) {
+        mCadence = cadence;
+        mHandler.removeMessages(MSG_TICK);
+        mLastTickIndex = -1;
+        mNextTargetMs = 0;
+        mNextFireMs = 0;
+        synchronized (this) {
+            mPendingTargetMs = 0;
+            mPendingFireMs = 0;
+        }
+        if (cadence != Cadence.OFF) mHandler.sendEmptyMessage(MSG_TICK);
+    }
+
+    /**
+     * Must be called from {@code onTimeTick}.
+     *
+     * @return {@code true} if the watch face must be redrawn for this time tick, {@code false} if a tick already did it.
+     */
+    public boolean onTimeTick() {
+        switch (mCadence) {
+            case SECOND:
+                // The tick of the second boundary already redrew
+                return false;
+
+            case MINUTE:
+                long timeMs = System.currentTimeMillis();
+                long tickIndex = timeMs / mCadence.periodMs;
+                if (tickIndex == mLastTickIndex) return false;
+                // This time tick arrived before our tick: align to it
+                mLastTickIndex = tickIndex;
+                setPending(tickIndex * mCadence.periodMs, 0);
+                scheduleNext(timeMs);
+                return true;
+
+            case OFF:
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns the time that a frame drawn now should display.  This is the targeted boundary when a tick fired early for it, or {@code nowMs}
+     * otherwise.
+     */
+    public synchronized long getFrameTimeMs(long nowMs) {
+        return mPendingTargetMs > nowMs ? mPendingTargetMs : nowMs;
+    }
+
+    /**
+     * Returns whether the frame about to be drawn is for a tick that targets a boundary (scheduled, or aligned to {@code onTimeTick}), as
+     * opposed to a redraw for any other reason.  Must be called before {@link #onFrameDrawn()}.
+     */
+    public synchronized boolean isTickFramePending() {
+        return mPendingTargetMs != 0;
+    }
+
+    /**
+     * Must be called once an interactive frame has been drawn.  Updates the latency estimate (the lateness itself is recorded by
+     * {@link FrameStats}).
+     */
+    public synchronized void onFrameDrawn() {
+        if (mPendingTargetMs == 0 || mCadence == Cadence.OFF) return;
+        long nowMs = System.currentTimeMillis();
+
+        if (mPendingFireMs != 0) {
+            long sampleUs = Math.max(0, nowMs - mPendingFireMs) * 1000;
+            mLatencyEstimateUs += (sampleUs - mLatencyEstimateUs) >> LATENCY_SMOOTHING_SHIFT;
+        }
+
+        mPendingTargetMs = 0;
+        mPendingFireMs = 0;
+    }
+
+    private void tick() {
+        if (mCadence == Cadence.OFF) return;
+        long timeMs = System.currentTimeMillis();
+        long targetMs = mNextTargetMs != 0 ? mNextTargetMs : timeMs;
+        long tickIndex = targetMs / mCadence.periodMs;
+        if (tickIndex != mLastTickIndex) {
+            mLastTickIndex = tickIndex;
+            // The first tick after a cadence change is drawn right away, at no particular boundary
+            if (mNextTargetMs != 0) setPending(targetMs, mNextFireMs);
+            mCallback.onTick();
+        }
+        scheduleNext(timeMs);
+    }
+
+    private synchronized void setPending(long targetMs, long fireMs) {
+        mPendingTargetMs = targetMs;
+        mPendingFireMs = fireMs;
+    }
+
+    private synchronized long getLeadMs() {
+        return Math.min(mLatencyEstimateUs / 1000, MAX_LEAD_MS);
+    }
+
+    /**
+     * Schedules the tick for the next boundary that can still be reached, early by the estimated latency.
+     */
+    private void scheduleNext(long timeMs) {
+        mHandler.removeMessages(MSG_TICK);
+        long periodMs = mCadence.periodMs;
+        long leadMs = getLeadMs();
+        long targetMs = ((timeMs + leadMs) / periodMs + 1) * periodMs;
+        mNextTargetMs = targetMs;
+        mNextFireMs = targetMs - leadMs;
+        mHandler.sendEmptyMessageDelayed(MSG_TICK, mNextFireMs - timeMs);
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.print("Ticks (");
+        writer.print(mCadence);
+        writer.println("):");
+        writer.print(prefix);
+        writer.print("  latency estimate=");
+        writer.print(mLatencyEstimateUs);
+        writer.print("us lead=");
+        writer.print(getLeadMs());
+        writer.println("ms");
+    }
+}
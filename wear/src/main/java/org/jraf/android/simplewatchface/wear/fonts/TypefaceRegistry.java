@@ -0,0 +1,140 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.fonts;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Typeface;
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.util.LruCache;
+
+import org.jraf.android.util.log.Log;
+
+/**
+ * Process-wide registry of the {@link Typeface}s loaded from the fonts in the assets.<br/>
+ * Each font is only parsed once, and then kept in memory until the system asks to trim memory (see {@link #trimMemory(int, String...)}).
+ */
+public class TypefaceRegistry {
+    private static final String PATH_FONTS = "fonts/";
+
+    /**
+     * Bigger than the number of bundled fonts, so in practice Typefaces are only evicted by {@link #trimMemory(int, String...)}.
+     */
+    private static final int MAX_SIZE = 32;
+
+    private static TypefaceRegistry sInstance;
+
+    private final AssetManager mAssetManager;
+    private final LruCache<String, Typeface> mCache = new LruCache<>(MAX_SIZE);
+
+    /**
+     * One lock per font name, so that a font being parsed is only parsed once (the other callers wait for it), while different fonts can be
+     * parsed concurrently.
+     */
+    private final ConcurrentHashMap<String, Object> mLoadLocks = new ConcurrentHashMap<>();
+
+    private TypefaceRegistry(Context context) {
+        mAssetManager = context.getApplicationContext().getAssets();
+    }
+
+    public static synchronized TypefaceRegistry get(Context context) {
+        if (sInstance == null) {
+            sInstance = new TypefaceRegistry(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the Typeface for the given font, parsing it only if it is not already in the registry.  This can be called from any thread: if the
+     * font is being parsed by another thread, this waits for it and returns the same instance.
+     *
+     * @param fontName The name of the font file, in the {@code fonts} assets folder.
+     */
+    @NonNull
+    public Typeface getTypeface(@NonNull String fontName) {
+        Typeface res = mCache.get(fontName);
+        if (res != null) return res;
+        synchronized (getLoadLock(fontName)) {
+            // It may have been loaded while we were waiting for the lock
+            res = mCache.get(fontName);
+            if (res == null) {
+                Log.d("Loading " + fontName);
+                res = Typeface.createFromAsset(mAssetManager, PATH_FONTS + fontName);
+                mCache.put(fontName, res);
+            }
+            return res;
+        }
+    }
+
+    private Object getLoadLock(String fontName) {
+        Object res = mLoadLocks.get(fontName);
+        if (res != null) return res;
+        Object newLock = new Object();
+        res = mLoadLocks.putIfAbsent(fontName, newLock);
+        return res != null ? res : newLock;
+    }
+
+    /**
+     * Loads the given fonts into the registry, on a background thread.
+     */
+    public void preloadAsync(@NonNull final String... fontNames) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                preload(fontNames);
+            }
+        });
+    }
+
+    @WorkerThread
+    public void preload(@NonNull String... fontNames) {
+        for (String fontName : fontNames) {
+            getTypeface(fontName);
+        }
+    }
+
+    /**
+     * Evicts the Typefaces from the registry if the memory is low enough.
+     *
+     * @param level The level passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     * @param fontNamesToKeep Fonts that are in use and should stay in the registry.
+     */
+    public void trimMemory(int level, @NonNull String... fontNamesToKeep) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) return;
+        Log.d("level=" + level);
+        // Only the other fonts are removed: the kept ones are never missing from the registry, so they are never parsed again into a new instance
+        List<String> fontNamesToKeepList = Arrays.asList(fontNamesToKeep);
+        for (String fontName : mCache.snapshot().keySet()) {
+            if (!fontNamesToKeepList.contains(fontName)) mCache.remove(fontName);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import org.jraf.android.util.log.Log;
+
+/**
+ * On-disk cache of a decoded bitmap, as raw pixels, so it can be loaded again by memory-mapping the file and copying the pixels, without
+ * decoding anything.<br/>
+ * The file is a header followed by the pixels as given by {@link Bitmap#copyPixelsToBuffer(java.nio.Buffer)}.  The header identifies the source
+ * file it was decoded from (length and modification date) and the target size it was decoded for, so a stale cache is detected.
+ */
+class RawBitmapCache {
+    private static final int MAGIC = 0x53574652;
+    private static final int VERSION = 1;
+
+    /**
+     * magic, version, source length, source last modified, target width, target height, width, height, config, byte count.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 4 + 4;
+
+    private static final Bitmap.Config[] CONFIGS = {Bitmap.Config.ARGB_8888, Bitmap.Config.RGB_565};
+
+    private RawBitmapCache() {}
+
+    /**
+     * Loads the bitmap from the cache file.
+     *
+     * @return the bitmap, or {@code null} if the cache file is missing, invalid, or was not made from the given source file for the given
+     * target size.
+     */
+    @WorkerThread
+    @Nullable
+    static Bitmap read(File cacheFile, File sourceFile, int targetWidth, int targetHeight) {
+        if (!cacheFile.exists()) return null;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(cacheFile, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE) return invalid(cacheFile, "too small");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return invalid(cacheFile, "unknown format");
+            if (buffer.getLong() != sourceFile.length() || buffer.getLong() != sourceFile.lastModified()) return invalid(cacheFile, "stale");
+            if (buffer.getInt() != targetWidth || buffer.getInt() != targetHeight) {
+                // Not invalid, just made for another size
+                Log.d("Made for another size");
+                return null;
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int configIndex = buffer.getInt();
+            int byteCount = buffer.getInt();
+            if (width <= 0 || height <= 0 || configIndex < 0 || configIndex >= CONFIGS.length || buffer.remaining() < byteCount) {
+                return invalid(cacheFile, "corrupt");
+            }
+            Bitmap res = Bitmap.createBitmap(width, height, CONFIGS[configIndex]);
+            if (res.getByteCount() != byteCount) {
+                res.recycle();
+                return invalid(cacheFile, "corrupt");
+            }
+            res.copyPixelsFromBuffer(buffer);
+            return res;
+        } catch (IOException | RuntimeException e) {
+            Log.w("Could not read " + cacheFile, e);
+            cacheFile.delete();
+            return null;
+        }
+    }
+
+    private static Bitmap invalid(File cacheFile, String reason) {
+        Log.d("Invalid cache file (" + reason + "): deleting it");
+        cacheFile.delete();
+        return null;
+    }
+
+    /**
+     * Saves the given bitmap, decoded for the given target size, to the cache file.  A temporary file is written next to the cache file then
+     * renamed, so a crash or a concurrent write never leaves a partial cache file.
+     *
+     * @param sourceLength the length of the source file, as read <em>before</em> decoding it.
+     * @param sourceLastModified the modification date of the source file, as read <em>before</em> decoding it.
+     */
+    @WorkerThread
+    static void write(File cacheFile, long sourceLength, long sourceLastModified, int targetWidth, int targetHeight, Bitmap bitmap) {
+        int configIndex = -1;
+        for (int i = 0; i < CONFIGS.length; i++) {
+            if (CONFIGS[i] == bitmap.getConfig()) configIndex = i;
+        }
+        if (configIndex == -1) {
+            Log.w("Unsupported config " + bitmap.getConfig() + ": not caching");
+            return;
+        }
+        File tmpFile;
+        try {
+            tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+        } catch (IOException e) {
+            Log.w("Could not create a temporary file", e);
+            return;
+        }
+        int byteCount = bitmap.getByteCount();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(tmpFile, "rw")) {
+            randomAccessFile.setLength(HEADER_SIZE + byteCount);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + byteCount);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(sourceLength);
+            buffer.putLong(sourceLastModified);
+            buffer.putInt(targetWidth);
+            buffer.putInt(targetHeight);
+            buffer.putInt(bitmap.getWidth());
+            buffer.putInt(bitmap.getHeight());
+            buffer.putInt(configIndex);
+            buffer.putInt(byteCount);
+            bitmap.copyPixelsToBuffer(buffer);
+            buffer.force();
+        } catch (IOException | RuntimeException e) {
+            Log.w("Could not write " + tmpFile, e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(cacheFile)) {
+            Log.w("Could not rename " + tmpFile + " to " + cacheFile);
+            tmpFile.delete();
+        }
+    }
+}
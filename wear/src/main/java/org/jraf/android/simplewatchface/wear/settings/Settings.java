@@ -24,6 +24,7 @@
  */
 package org.jraf.android.simplewatchface.wear.settings;
 
+import org.jraf.android.prefs.DefaultBoolean;
 import org.jraf.android.prefs.DefaultInt;
 import org.jraf.android.prefs.DefaultString;
 import org.jraf.android.prefs.Prefs;
@@ -56,4 +57,7 @@ public class Settings {
 
     @DefaultInt(28)
     Integer sizeDate;
+
+    @DefaultBoolean(false)
+    Boolean hideSeconds;
 }
@@ -27,29 +27,68 @@ package org.jraf.android.simplewatchface.wear.settings;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.DisplayMetrics;
 
-import org.jraf.android.util.bitmap.BitmapUtil;
 import org.jraf.android.util.listeners.Listeners;
 import org.jraf.android.util.log.Log;
 
 public class SettingsHelper extends SettingsPrefs {
+    /*
+     * Keys reported to the listeners (the same as the preference keys, except for the background picture which is not a preference).
+     */
+    public static final String KEY_COLOR_BACKGROUND = "colorBackground";
+    public static final String KEY_COLOR_HOUR_MINUTES = "colorHourMinutes";
+    public static final String KEY_COLOR_SECONDS = "colorSeconds";
+    public static final String KEY_COLOR_AM_PM = "colorAmPm";
+    public static final String KEY_COLOR_DATE = "colorDate";
+    public static final String KEY_FONT_TIME = "fontTime";
+    public static final String KEY_FONT_DATE = "fontDate";
+    public static final String KEY_SIZE_TIME = "sizeTime";
+    public static final String KEY_SIZE_DATE = "sizeDate";
+    public static final String KEY_HIDE_SECONDS = "hideSeconds";
+    public static final String KEY_BACKGROUND_PICTURE = "backgroundPicture";
+
     private static SettingsHelper sInstance;
     private static final String FILE_BACKGROUND_PICTURE = "background.jpg";
 
+    /**
+     * The decoded background picture, as raw pixels (see {@link RawBitmapCache}).
+     */
+    private static final String FILE_BACKGROUND_PICTURE_RAW = "background.raw";
+
+    /**
+     * Size of the buffer used to save the background picture from a descriptor.
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     private Context mContext;
-    private Bitmap mBackgroundPicture;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     private SettingsHelper(SharedPreferences wrapped) {
         super(wrapped);
     }
 
-    public static SettingsHelper get(Context context) {
+    public static synchronized SettingsHelper get(Context context) {
         if (sInstance == null) {
             sInstance = new SettingsHelper(getWrapped(context));
             sInstance.init(context);
@@ -59,23 +98,287 @@ public class SettingsHelper extends SettingsPrefs {
 
     private void init(Context context) {
         mContext = context.getApplicationContext();
-        File backgroundBitmapFile = context.getFileStreamPath(FILE_BACKGROUND_PICTURE);
-        if (backgroundBitmapFile.exists()) {
-            mBackgroundPicture = BitmapUtil.tryDecodeFile(backgroundBitmapFile, null);
-            if (mBackgroundPicture == null) Log.w("Could not open background bitmap");
+        mSnapshot.set(createSnapshot(null));
+        // Always registered, to keep the snapshot up to date
+        registerOnSharedPreferenceChangeListener(mOnSharedPreferenceChangeListener);
+    }
+
+
+    /*
+     * Snapshot.
+     */
+    // region
+
+    private final AtomicReference<SettingsSnapshot> mSnapshot = new AtomicReference<>();
+
+    /**
+     * Returns the current settings, as an immutable snapshot.  This can be called from any thread, and doesn't lock.  When the listeners are
+     * notified, the snapshot already has the new values.
+     */
+    public SettingsSnapshot getSnapshot() {
+        return mSnapshot.get();
+    }
+
+    private SettingsSnapshot createSnapshot(@Nullable Bitmap backgroundPicture) {
+        return new SettingsSnapshot(getColorBackground(), getColorHourMinutes(), getColorSeconds(), getColorAmPm(), getColorDate(), getFontTime(),
+                getFontDate(), getSizeTime(), getSizeDate(), getHideSeconds(), backgroundPicture);
+    }
+
+    /**
+     * Publishes a new snapshot with the current preference values (and the current background picture).
+     */
+    private void updateSnapshotFromPreferences() {
+        while (true) {
+            SettingsSnapshot current = mSnapshot.get();
+            if (mSnapshot.compareAndSet(current, createSnapshot(current.backgroundPicture))) return;
+        }
+    }
+
+    /**
+     * Publishes a new snapshot with the given background picture.
+     */
+    private void updateSnapshotBackgroundPicture(@Nullable Bitmap backgroundPicture) {
+        while (true) {
+            SettingsSnapshot current = mSnapshot.get();
+            if (mSnapshot.compareAndSet(current, current.withBackgroundPicture(backgroundPicture))) return;
         }
     }
 
+    // endregion
+
+
+    /*
+     * Background picture.
+     */
+    // region
+
+    /**
+     * Incremented (on the main thread) each time the picture changes, so that a load started before is discarded.  Also read by the loading
+     * thread, so it doesn't write a stale raw pixels cache.
+     */
+    private final AtomicInteger mBackgroundPictureGeneration = new AtomicInteger();
+    private boolean mBackgroundPictureLoading;
+
+    /**
+     * The size the picture is decoded for (0 until someone asks for a size).
+     */
+    private int mBackgroundPictureWidth;
+    private int mBackgroundPictureHeight;
+
+    /**
+     * Returns the background picture if it is loaded.  If there is a picture but it isn't loaded yet, this starts loading it asynchronously (at
+     * the last requested size, or the size of the screen) and returns {@code null}: the listeners are notified with
+     * {@link #KEY_BACKGROUND_PICTURE} once it is ready.
+     */
+    @Nullable
     public Bitmap getBackgroundPicture() {
-        return mBackgroundPicture;
+        Bitmap res = mSnapshot.get().backgroundPicture;
+        if (res == null) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    loadBackgroundPictureIfNeeded();
+                }
+            });
+        }
+        return res;
+    }
+
+    /**
+     * Indicates the size the background picture will be drawn at, so it is decoded at a resolution close to that instead of its full
+     * resolution.  The picture is loaded again (asynchronously) if it was decoded for a smaller size.
+     */
+    @MainThread
+    public void requestBackgroundPictureSize(int width, int height) {
+        if (width <= mBackgroundPictureWidth && height <= mBackgroundPictureHeight) return;
+        mBackgroundPictureWidth = Math.max(width, mBackgroundPictureWidth);
+        mBackgroundPictureHeight = Math.max(height, mBackgroundPictureHeight);
+        if (mSnapshot.get().backgroundPicture != null || mBackgroundPictureLoading) {
+            // Decode it again, for the bigger size
+            mBackgroundPictureGeneration.incrementAndGet();
+            mBackgroundPictureLoading = false;
+        }
+        loadBackgroundPictureIfNeeded();
+    }
+
+    @MainThread
+    private void loadBackgroundPictureIfNeeded() {
+        if (mBackgroundPictureLoading) return;
+        Bitmap backgroundPicture = mSnapshot.get().backgroundPicture;
+        if (backgroundPicture != null && backgroundPicture.getWidth() >= mBackgroundPictureWidth &&
+                backgroundPicture.getHeight() >= mBackgroundPictureHeight) {
+            return;
+        }
+        final File file = mContext.getFileStreamPath(FILE_BACKGROUND_PICTURE);
+        final File rawFile = mContext.getFileStreamPath(FILE_BACKGROUND_PICTURE_RAW);
+        if (!file.exists()) return;
+
+        int width = mBackgroundPictureWidth;
+        int height = mBackgroundPictureHeight;
+        if (width == 0 || height == 0) {
+            DisplayMetrics displayMetrics = mContext.getResources().getDisplayMetrics();
+            width = displayMetrics.widthPixels;
+            height = displayMetrics.heightPixels;
+        }
+        final int targetWidth = width;
+        final int targetHeight = height;
+        final int generation = mBackgroundPictureGeneration.get();
+        mBackgroundPictureLoading = true;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Fast path: the pixels were already decoded for this size
+                long startNanos = System.nanoTime();
+                Bitmap rawPicture = RawBitmapCache.read(rawFile, file, targetWidth, targetHeight);
+                if (rawPicture != null) {
+                    Log.d("Loaded " + rawPicture.getWidth() + "x" + rawPicture.getHeight() + " from the raw pixels cache in " +
+                            (System.nanoTime() - startNanos) / 1000000 + "ms");
+                } else {
+                    // Slow path: decode the JPEG, and cache the result for the next time.
+                    // The source identity is read before decoding: if the file is replaced meanwhile, the cache will be seen as stale
+                    // instead of holding the old pixels under the new file's identity.
+                    long sourceLength = file.length();
+                    long sourceLastModified = file.lastModified();
+                    rawPicture = decodeBackgroundPicture(file, targetWidth, targetHeight);
+                    if (rawPicture != null && generation == mBackgroundPictureGeneration.get()) {
+                        startNanos = System.nanoTime();
+                        RawBitmapCache.write(rawFile, sourceLength, sourceLastModified, targetWidth, targetHeight, rawPicture);
+                        Log.d("Raw pixels cache written in " + (System.nanoTime() - startNanos) / 1000000 + "ms");
+                    }
+                }
+                final Bitmap picture = rawPicture;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mBackgroundPictureGeneration.get()) return;
+                        mBackgroundPictureLoading = false;
+                        if (picture == null) return;
+                        updateSnapshotBackgroundPicture(picture);
+                        dispatchToListeners(Collections.singleton(KEY_BACKGROUND_PICTURE));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Decodes the given file so that it covers (at least) the given size, subsampling with {@code inSampleSize} then scaling to the exact size
+     * with {@code inDensity} / {@code inTargetDensity}.
+     */
+    @WorkerThread
+    @Nullable
+    private static Bitmap decodeBackgroundPicture(File file, int targetWidth, int targetHeight) {
+        long startNanos = System.nanoTime();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if (width <= 0 || height <= 0) {
+            Log.w("Could not open background bitmap");
+            return null;
+        }
+
+        // Biggest power of 2 that still covers the target size
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        int sampledWidth = width / sampleSize;
+        int sampledHeight = height / sampleSize;
+
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        // Scale down the rest of the way, along the side that limits covering the target
+        if ((long) targetWidth * sampledHeight >= (long) targetHeight * sampledWidth) {
+            if (sampledWidth > targetWidth) {
+                options.inScaled = true;
+                options.inDensity = sampledWidth;
+                options.inTargetDensity = targetWidth;
+            }
+        } else if (sampledHeight > targetHeight) {
+            options.inScaled = true;
+            options.inDensity = sampledHeight;
+            options.inTargetDensity = targetHeight;
+        }
+        Bitmap res = BitmapFactory.decodeFile(file.getPath(), options);
+        if (res == null) {
+            Log.w("Could not open background bitmap");
+        } else {
+            Log.d(width + "x" + height + " decoded to " + res.getWidth() + "x" + res.getHeight() + " (inSampleSize=" + sampleSize + ") in " +
+                    (System.nanoTime() - startNanos) / 1000000 + "ms");
+        }
+        return res;
     }
 
+    /**
+     * Saves (or deletes) the background picture.  Can be called from any thread: the listeners are notified on the main thread, and the new
+     * picture is loaded asynchronously.
+     */
     public void setBackgroundPicture(@Nullable byte[] bitmapData) {
+        storeBackgroundPicture(bitmapData);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                onBackgroundPictureFileChanged();
+                dispatchToListeners(Collections.singleton(KEY_BACKGROUND_PICTURE));
+            }
+        });
+    }
+
+    /**
+     * Saves the background picture read from the given descriptor, which is closed afterwards.  The data is transferred straight to the file
+     * (without being held in memory), and the picture is then decoded from the file, downsampled, as for {@link #getBackgroundPicture()}.
+     */
+    @WorkerThread
+    public void setBackgroundPicture(@NonNull ParcelFileDescriptor source) {
+        File file = mContext.getFileStreamPath(FILE_BACKGROUND_PICTURE);
+        File tempFile = null;
+        try (FileChannel sourceChannel = new ParcelFileDescriptor.AutoCloseInputStream(source).getChannel()) {
+            tempFile = File.createTempFile(FILE_BACKGROUND_PICTURE, null, mContext.getFilesDir());
+            long startNanos = System.nanoTime();
+            long size = 0;
+            try (FileChannel fileChannel = new FileOutputStream(tempFile).getChannel()) {
+                // The source is usually a pipe: it can't be seeked, mapped or sized, so transferFrom() can't be used.  Plain reads work,
+                // until the end of the stream.
+                ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+                while (sourceChannel.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        size += fileChannel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                fileChannel.force(false);
+            }
+            Log.d("Transferred " + size + " bytes in " + (System.nanoTime() - startNanos) / 1000000 + "ms");
+            // The raw pixels cache would be detected as stale anyway
+            mContext.deleteFile(FILE_BACKGROUND_PICTURE_RAW);
+            if (!tempFile.renameTo(file)) throw new IOException("Could not rename " + tempFile + " to " + file);
+        } catch (IOException e) {
+            Log.e("Could not save the bitmap to a file", e);
+            if (tempFile != null) tempFile.delete();
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                onBackgroundPictureFileChanged();
+                dispatchToListeners(Collections.singleton(KEY_BACKGROUND_PICTURE));
+            }
+        });
+    }
+
+    private boolean hasBackgroundPictureFile() {
+        return mContext.getFileStreamPath(FILE_BACKGROUND_PICTURE).exists();
+    }
+
+    private void storeBackgroundPicture(@Nullable byte[] bitmapData) {
+        // The raw pixels cache would be detected as stale anyway
+        mContext.deleteFile(FILE_BACKGROUND_PICTURE_RAW);
         if (bitmapData == null) {
-            mBackgroundPicture = null;
             mContext.deleteFile(FILE_BACKGROUND_PICTURE);
         } else {
-            mBackgroundPicture = BitmapFactory.decodeByteArray(bitmapData, 0, bitmapData.length);
             try (FileOutputStream fileOutputStream = mContext.openFileOutput(FILE_BACKGROUND_PICTURE, Context.MODE_PRIVATE)) {
                 fileOutputStream.write(bitmapData, 0, bitmapData.length);
                 fileOutputStream.flush();
@@ -83,9 +386,144 @@ public class SettingsHelper extends SettingsPrefs {
                 Log.e("Could not save the bitmap to a file", e);
             }
         }
-        dispatchToListeners();
     }
 
+    /**
+     * Forgets the currently loaded picture, and starts loading the new one (if any).
+     */
+    @MainThread
+    private void onBackgroundPictureFileChanged() {
+        mBackgroundPictureGeneration.incrementAndGet();
+        mBackgroundPictureLoading = false;
+        updateSnapshotBackgroundPicture(null);
+        loadBackgroundPictureIfNeeded();
+    }
+
+    // endregion
+
+
+    /*
+     * Transactions.
+     */
+    // region
+
+    /**
+     * Keys written by a transaction, whose individual preference change callbacks must be ignored since the transaction dispatches them all at
+     * once.
+     */
+    private final Set<String> mTransactionKeys = new HashSet<>();
+
+    /**
+     * Starts editing several settings at once.  Nothing is written until {@link Transaction#commit()} is called.
+     */
+    public Transaction beginTransaction() {
+        return new Transaction();
+    }
+
+    /**
+     * A set of settings changes, written in one go and reported to the listeners with a single {@link SettingsChangeListener#onSettingsChanged(Set)
+     * onSettingsChanged} call.  Values equal to the current ones are ignored.
+     */
+    public class Transaction {
+        private final SharedPreferences.Editor mEditor = edit();
+        private final Set<String> mPreferenceKeys = new HashSet<>();
+        private boolean mBackgroundPictureChanged;
+        private byte[] mBackgroundPictureData;
+
+        private Transaction() {}
+
+        public Transaction putColorBackground(int color) {
+            return putInt(KEY_COLOR_BACKGROUND, getColorBackground(), color);
+        }
+
+        public Transaction putColorHourMinutes(int color) {
+            return putInt(KEY_COLOR_HOUR_MINUTES, getColorHourMinutes(), color);
+        }
+
+        public Transaction putColorSeconds(int color) {
+            return putInt(KEY_COLOR_SECONDS, getColorSeconds(), color);
+        }
+
+        public Transaction putColorAmPm(int color) {
+            return putInt(KEY_COLOR_AM_PM, getColorAmPm(), color);
+        }
+
+        public Transaction putColorDate(int color) {
+            return putInt(KEY_COLOR_DATE, getColorDate(), color);
+        }
+
+        public Transaction putFontTime(String fontName) {
+            return putString(KEY_FONT_TIME, getFontTime(), fontName);
+        }
+
+        public Transaction putFontDate(String fontName) {
+            return putString(KEY_FONT_DATE, getFontDate(), fontName);
+        }
+
+        public Transaction putSizeTime(int size) {
+            return putInt(KEY_SIZE_TIME, getSizeTime(), size);
+        }
+
+        public Transaction putSizeDate(int size) {
+            return putInt(KEY_SIZE_DATE, getSizeDate(), size);
+        }
+
+        public Transaction putHideSeconds(boolean hideSeconds) {
+            if (hideSeconds == getHideSeconds()) return this;
+            mEditor.putBoolean(KEY_HIDE_SECONDS, hideSeconds);
+            mPreferenceKeys.add(KEY_HIDE_SECONDS);
+            return this;
+        }
+
+        /**
+         * @param bitmapData The encoded picture, or {@code null} to remove the background picture.
+         */
+        public Transaction setBackgroundPicture(@Nullable byte[] bitmapData) {
+            if (bitmapData == null && !hasBackgroundPictureFile()) return this;
+            mBackgroundPictureChanged = true;
+            mBackgroundPictureData = bitmapData;
+            return this;
+        }
+
+        private Transaction putInt(String key, int currentValue, int value) {
+            if (value == currentValue) return this;
+            mEditor.putInt(key, value);
+            mPreferenceKeys.add(key);
+            return this;
+        }
+
+        private Transaction putString(String key, String currentValue, String value) {
+            if (value.equals(currentValue)) return this;
+            mEditor.putString(key, value);
+            mPreferenceKeys.add(key);
+            return this;
+        }
+
+        /**
+         * Writes all the changes, then notifies the listeners once with all the changed keys (if any).
+         */
+        @MainThread
+        public void commit() {
+            Set<String> changedKeys = new HashSet<>(mPreferenceKeys);
+            if (!mPreferenceKeys.isEmpty()) {
+                synchronized (mTransactionKeys) {
+                    mTransactionKeys.addAll(mPreferenceKeys);
+                }
+                mEditor.apply();
+                // The preference change callbacks may only come later: publish the new values now
+                updateSnapshotFromPreferences();
+            }
+            if (mBackgroundPictureChanged) {
+                storeBackgroundPicture(mBackgroundPictureData);
+                onBackgroundPictureFileChanged();
+                changedKeys.add(KEY_BACKGROUND_PICTURE);
+            }
+            if (!changedKeys.isEmpty()) dispatchToListeners(Collections.unmodifiableSet(changedKeys));
+        }
+    }
+
+    // endregion
+
 
     /*
      * Listeners.
@@ -93,33 +531,39 @@ public class SettingsHelper extends SettingsPrefs {
     // region
 
     public static interface SettingsChangeListener {
-        void onSettingsChanged();
+        /**
+         * @param changedKeys The keys of the settings that changed (one of the {@code KEY_*} constants).
+         */
+        void onSettingsChanged(Set<String> changedKeys);
     }
 
     private Listeners<SettingsChangeListener> mListeners = new Listeners<SettingsChangeListener>() {
         @Override
         protected void onFirstListener() {
-            registerOnSharedPreferenceChangeListener(mOnSharedPreferenceChangeListener);
+            // The preference change listener is always registered (see init)
         }
 
         @Override
-        protected void onNoMoreListeners() {
-            unregisterOnSharedPreferenceChangeListener(mOnSharedPreferenceChangeListener);
-        }
+        protected void onNoMoreListeners() {}
     };
 
     private SharedPreferences.OnSharedPreferenceChangeListener mOnSharedPreferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
         @Override
         public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            dispatchToListeners();
+            updateSnapshotFromPreferences();
+            synchronized (mTransactionKeys) {
+                // Already dispatched by the transaction
+                if (mTransactionKeys.remove(key)) return;
+            }
+            dispatchToListeners(Collections.singleton(key));
         }
     };
 
-    private void dispatchToListeners() {
+    private void dispatchToListeners(final Set<String> changedKeys) {
         mListeners.dispatch(new Listeners.Dispatcher<SettingsChangeListener>() {
             @Override
             public void dispatch(SettingsChangeListener listener) {
-                listener.onSettingsChanged();
+                listener.onSettingsChanged(changedKeys);
             }
         });
     }
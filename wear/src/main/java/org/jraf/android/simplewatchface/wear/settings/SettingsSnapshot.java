@@ -0,0 +1,91 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.settings;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+/**
+ * Immutable view of all the settings at one point in time, published by {@link SettingsHelper#getSnapshot()}.<br/>
+ * Changing a setting publishes a new snapshot, so a snapshot can be read from any thread and its values are always consistent with each other.
+ */
+public final class SettingsSnapshot {
+    public final int colorBackground;
+    public final int colorHourMinutes;
+    public final int colorSeconds;
+    public final int colorAmPm;
+    public final int colorDate;
+    public final String fontTime;
+    public final String fontDate;
+    public final int sizeTime;
+    public final int sizeDate;
+    public final boolean hideSeconds;
+
+    /**
+     * The background picture, or {@code null} if there is none or it is not loaded yet.  Must not be modified.
+     */
+    @Nullable
+    public final Bitmap backgroundPicture;
+
+    SettingsSnapshot(int colorBackground, int colorHourMinutes, int colorSeconds, int colorAmPm, int colorDate, String fontTime, String fontDate,
+                     int sizeTime, int sizeDate, boolean hideSeconds, @Nullable Bitmap backgroundPicture) {
+        this.colorBackground = colorBackground;
+        this.colorHourMinutes = colorHourMinutes;
+        this.colorSeconds = colorSeconds;
+        this.colorAmPm = colorAmPm;
+        this.colorDate = colorDate;
+        this.fontTime = fontTime;
+        this.fontDate = fontDate;
+        this.sizeTime = sizeTime;
+        this.sizeDate = sizeDate;
+        this.hideSeconds = hideSeconds;
+        this.backgroundPicture = backgroundPicture;
+    }
+
+    /**
+     * Returns a copy of this snapshot, with another background picture.
+     */
+    SettingsSnapshot withBackgroundPicture(@Nullable Bitmap backgroundPicture) {
+        return new SettingsSnapshot(colorBackground, colorHourMinutes, colorSeconds, colorAmPm, colorDate, fontTime, fontDate, sizeTime, sizeDate,
+                hideSeconds, backgroundPicture);
+    }
+
+    @Override
+    public String toString() {
+        return "SettingsSnapshot{" +
+                "colorBackground=" + Integer.toHexString(colorBackground) +
+                ", colorHourMinutes=" + Integer.toHexString(colorHourMinutes) +
+                ", colorSeconds=" + Integer.toHexString(colorSeconds) +
+                ", colorAmPm=" + Integer.toHexString(colorAmPm) +
+                ", colorDate=" + Integer.toHexString(colorDate) +
+                ", fontTime='" + fontTime + '\'' +
+                ", fontDate='" + fontDate + '\'' +
+                ", sizeTime=" + sizeTime +
+                ", sizeDate=" + sizeDate +
+                ", hideSeconds=" + hideSeconds +
+                ", backgroundPicture=" + backgroundPicture +
+                '}';
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.trace;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide, fixed-size, lock-free ring buffer of trace events, meant to replace logs on hot paths.<br/>
+ * Recording an event only writes three primitives (no allocation, no string work, no I/O).  The most recent {@link #CAPACITY} events can be
+ * printed with {@link #dump(String, PrintWriter)}.
+ */
+public final class EventTrace {
+    public static final boolean ENABLED = true;
+
+    /*
+     * Events.
+     */
+    public static final int EVENT_INVALIDATE = 0;
+    public static final int EVENT_TICK = 1;
+    public static final int EVENT_TIME_TICK = 2;
+    public static final int EVENT_DRAW_START = 3;
+    /**
+     * Argument: duration of the draw, in microseconds.
+     */
+    public static final int EVENT_DRAW_END = 4;
+    public static final int EVENT_RENDER_MINUTE_LAYER = 5;
+    /**
+     * Argument: latency between the ambient mode change and its first frame, in microseconds.
+     */
+    public static final int EVENT_MODE_CHANGE_LATENCY = 6;
+
+    private static final String[] EVENT_NAMES =
+            {"invalidate", "tick", "timeTick", "drawStart", "drawEnd", "renderMinuteLayer", "modeChangeLatency"};
+
+    /**
+     * Must be a power of 2.
+     */
+    private static final int CAPACITY = 512;
+    private static final int MASK = CAPACITY - 1;
+
+    private static final AtomicLong sNextIndex = new AtomicLong();
+    private static final int[] sEventIds = new int[CAPACITY];
+    private static final long[] sTimestampsNanos = new long[CAPACITY];
+    private static final long[] sArgs = new long[CAPACITY];
+
+    /**
+     * For each slot, index + 1 of the event it holds, published after the event itself so readers can detect slots being overwritten.
+     */
+    private static final AtomicLongArray sSequences = new AtomicLongArray(CAPACITY);
+
+    private EventTrace() {}
+
+    public static void record(int eventId) {
+        record(eventId, 0);
+    }
+
+    public static void record(int eventId, long arg) {
+        if (!ENABLED) return;
+        long index = sNextIndex.getAndIncrement();
+        int slot = (int) (index & MASK);
+        sSequences.set(slot, 0);
+        sEventIds[slot] = eventId;
+        sTimestampsNanos[slot] = System.nanoTime();
+        sArgs[slot] = arg;
+        sSequences.set(slot, index + 1);
+    }
+
+    /**
+     * Prints the recorded events, oldest first.  Events being written concurrently are skipped.
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        long end = sNextIndex.get();
+        long start = Math.max(0, end - CAPACITY);
+        writer.print(prefix);
+        writer.print("Trace (");
+        writer.print(end - start);
+        writer.print("/");
+        writer.print(end);
+        writer.println(" events):");
+        long previousTimestampNanos = 0;
+        for (long index = start; index < end; index++) {
+            int slot = (int) (index & MASK);
+            if (sSequences.get(slot) != index + 1) continue;
+            int eventId = sEventIds[slot];
+            long timestampNanos = sTimestampsNanos[slot];
+            long arg = sArgs[slot];
+            if (sSequences.get(slot) != index + 1) continue;
+
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(timestampNanos / 1000);
+            writer.print("us");
+            if (previousTimestampNanos != 0) {
+                writer.print(" (+");
+                writer.print((timestampNanos - previousTimestampNanos) / 1000);
+                writer.print("us)");
+            }
+            writer.print(" ");
+            writer.print(eventId >= 0 && eventId < EVENT_NAMES.length ? EVENT_NAMES[eventId] : String.valueOf(eventId));
+            if (arg != 0) {
+                writer.print(" ");
+                writer.print(arg);
+            }
+            writer.println();
+            previousTimestampNanos = timestampNanos;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * This source is part of the
+ *      _____  ___   ____
+ *  __ / / _ \/ _ | / __/___  _______ _
+ * / // / , _/ __ |/ _/_/ _ \/ __/ _ `/
+ * \___/_/|_/_/ |_/_/ (_)___/_/  \_, /
+ *                              /___/
+ * repository.
+ *
+ * Copyright (C) 2017 Benoit 'BoD' Lubek (BoD@JRAF.org)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jraf.android.simplewatchface.wear.app.watchface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+
+import org.jraf.android.simplewatchface.core.clock.WallClock;
+import org.jraf.android.simplewatchface.core.format.TimeFormatter;
+import org.jraf.android.simplewatchface.core.layout.GlyphSpriteLayout;
+import org.jraf.android.simplewatchface.core.layout.TextLayout;
+import org.jraf.android.simplewatchface.core.text.Bounds;
+import org.jraf.android.simplewatchface.core.text.TextMetrics;
+import org.jraf.android.simplewatchface.wear.trace.EventTrace;
+import org.junit.Test;
+
+/**
+ * Checks that the per frame work of {@link SimpleWatchFaceService}'s engine doesn't allocate anything, in interactive and ambient mode: the
+ * trace events, reading the clock, formatting the time, getting the date text, updating the layout, placing the glyph sprites and recording
+ * the frame stats.  Only the calls to the {@code Canvas} (which need a device) are left out.
+ */
+public class FrameAllocationTest {
+    private static final int CANVAS_WIDTH = 320;
+    private static final long SECOND_MS = 1000;
+    private static final long MINUTE_MS = 60 * SECOND_MS;
+    private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+
+    /**
+     * 2017-01-01T12:00:00+01:00: each day of frames starts at noon, so it crosses midnight.
+     */
+    private static final long START_MS = 1483268400000L;
+
+    /**
+     * Measures texts as if all the chars were 10 pixels wide, without allocating.
+     */
+    private static class FakeTextMetrics implements TextMetrics {
+        private final int mHeight;
+
+        FakeTextMetrics(int height) {
+            mHeight = height;
+        }
+
+        @Override
+        public void getTextBounds(char[] text, int index, int count, Bounds bounds) {
+            bounds.set(0, -mHeight, count * 10, 0);
+        }
+
+        @Override
+        public void getTextBounds(String text, Bounds bounds) {
+            bounds.set(0, -mHeight, text.length() * 10, 0);
+        }
+    }
+
+    /**
+     * Keeps the task instead of running it: the test runs it outside of the frames, as the background thread would.
+     */
+    private static class PendingExecutor implements Executor {
+        Runnable pending;
+
+        @Override
+        public void execute(Runnable command) {
+            pending = command;
+        }
+    }
+
+    private com.sun.management.ThreadMXBean mThreadMXBean;
+    private long mThreadId;
+    private long mOverhead;
+
+    private final WallClock mClock = new WallClock(TimeZone.getTimeZone("Europe/Paris"));
+    private final TextLayout mTextLayout = new TextLayout();
+    private final char[] mHourMinutesChars = new char[TimeFormatter.HOUR_MINUTES_MAX_LENGTH];
+    private final char[] mSecondsChars = new char[TimeFormatter.SECONDS_LENGTH];
+    private final TextMetrics mHourMinutesMetrics = new FakeTextMetrics(60);
+    private final TextMetrics mSecondsMetrics = new FakeTextMetrics(30);
+    private final TextMetrics mDateMetrics = new FakeTextMetrics(20);
+    private final TextMetrics mAmPmMetrics = new FakeTextMetrics(15);
+
+    private final PendingExecutor mDateExecutor = new PendingExecutor();
+    private final DateTextProvider mDateTextProvider = new DateTextProvider("dEEEMMM", mDateExecutor) {
+        @Override
+        String format(Locale locale, TimeZone timeZone, String skeleton, long timeMs) {
+            return "Day " + timeMs / DAY_MS;
+        }
+    };
+
+    private final GlyphSpriteLayout mHourMinutesSprites = new GlyphSpriteLayout();
+    private final GlyphSpriteLayout mSecondsSprites = new GlyphSpriteLayout();
+    private final GlyphSpriteLayout mAmPmSprites = new GlyphSpriteLayout();
+    private final Bounds mSrcBounds = new Bounds();
+    private final Bounds mDstBounds = new Bounds();
+
+    private final FrameStats mInteractiveFrameStats = new FrameStats("Interactive", SECOND_MS, 100);
+    private final FrameStats mAmbientFrameStats = new FrameStats("Ambient", MINUTE_MS, 1000);
+
+    private long mTimeMs = START_MS;
+    private int mLayoutCount;
+    private int mDatePrecomputeCount;
+
+    /**
+     * Bytes allocated by the frames, not counting the tasks run outside of them.
+     */
+    private long mAllocated;
+    private long mMeasureStart;
+
+    @Test
+    public void framesDontAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        mThreadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mThreadMXBean.isThreadAllocatedMemorySupported());
+        mThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+        mThreadId = Thread.currentThread().getId();
+
+        float[] advances = new float[GlyphSpriteLayout.GLYPHS.length];
+        for (int i = 0; i < advances.length; i++) {
+            advances[i] = 10.5f;
+        }
+        mHourMinutesSprites.update(mHourMinutesMetrics, advances, 6);
+        mSecondsSprites.update(mSecondsMetrics, advances, 3);
+        mAmPmSprites.update(mAmPmMetrics, advances, 3);
+
+        // Warm up, so that the code is compiled and the classes are loaded
+        for (int i = 0; i < 10; i++) {
+            drawInteractiveDay(false);
+            drawAmbientDay(true);
+        }
+
+        // Reading the allocated bytes may itself allocate: measure that first
+        long overheadStart = mThreadMXBean.getThreadAllocatedBytes(mThreadId);
+        mOverhead = mThreadMXBean.getThreadAllocatedBytes(mThreadId) - overheadStart;
+
+        mLayoutCount = 0;
+        mDatePrecomputeCount = 0;
+        mAllocated = 0;
+        mMeasureStart = mThreadMXBean.getThreadAllocatedBytes(mThreadId);
+        drawInteractiveDay(false);
+        drawInteractiveDay(true);
+        drawAmbientDay(false);
+        drawAmbientDay(true);
+        mAllocated += mThreadMXBean.getThreadAllocatedBytes(mThreadId) - mMeasureStart - mOverhead;
+
+        // One layout per minute, per day (the date changes at midnight, with the minute)
+        assertEquals(4 * 24 * 60, mLayoutCount);
+        // The date of the next day is formatted ahead, once per day
+        assertEquals(4, mDatePrecomputeCount);
+        assertEquals("Bytes allocated by the frames of 2 interactive and 2 ambient days", 0, mAllocated);
+    }
+
+    /**
+     * Draws a day of interactive frames, one per second, like after each tick.
+     */
+    private void drawInteractiveDay(boolean is24HourFormat) {
+        for (int i = 0; i < DAY_MS / SECOND_MS; i++) {
+            EventTrace.record(EventTrace.EVENT_TICK);
+            EventTrace.record(EventTrace.EVENT_INVALIDATE);
+            drawFrame(false, is24HourFormat);
+            mTimeMs += SECOND_MS;
+        }
+    }
+
+    /**
+     * Draws a day of ambient frames, one per minute, like after each {@code onTimeTick}.
+     */
+    private void drawAmbientDay(boolean is24HourFormat) {
+        for (int i = 0; i < DAY_MS / MINUTE_MS; i++) {
+            EventTrace.record(EventTrace.EVENT_TIME_TICK);
+            EventTrace.record(EventTrace.EVENT_INVALIDATE);
+            drawFrame(true, is24HourFormat);
+            mTimeMs += MINUTE_MS;
+        }
+    }
+
+    /**
+     * Does what {@code onDraw} does, in the same order, minus the {@code Canvas} calls.
+     */
+    private void drawFrame(boolean ambient, boolean is24HourFormat) {
+        EventTrace.record(EventTrace.EVENT_DRAW_START);
+        long startNanos = System.nanoTime();
+        mClock.setTimeMillis(mTimeMs);
+
+        int hourMinutesLength = TimeFormatter.formatHourMinutes(mClock.getHourOfDay(), mClock.getMinute(), is24HourFormat, mHourMinutesChars);
+        String dateStr = mDateTextProvider.getDateText(mClock);
+        char[] amPm = is24HourFormat ? null : TimeFormatter.getAmPm(mClock.getHourOfDay());
+        boolean layoutChanged = mTextLayout.update(CANVAS_WIDTH, mHourMinutesChars, hourMinutesLength, !ambient, dateStr, amPm,
+                mHourMinutesMetrics, mSecondsMetrics, mDateMetrics, mAmPmMetrics, true, 10, 5, 5);
+        if (layoutChanged) mLayoutCount++;
+
+        // In ambient mode the minute text is drawn at each frame, in interactive mode it is rendered into the minute layer when it changes
+        if (ambient || layoutChanged) {
+            if (!ambient) EventTrace.record(EventTrace.EVENT_RENDER_MINUTE_LAYER);
+            placeSprites(mHourMinutesSprites, mHourMinutesChars, hourMinutesLength, mTextLayout.hourMinutesBounds, mTextLayout.hourMinutesX,
+                    mTextLayout.hourMinutesY);
+            if (amPm != null) {
+                placeSprites(mAmPmSprites, amPm, amPm.length, mTextLayout.amPmBounds, mTextLayout.amPmX, mTextLayout.amPmY);
+            }
+        }
+        if (!ambient) {
+            TimeFormatter.formatSeconds(mClock.getSecond(), mSecondsChars);
+            placeSprites(mSecondsSprites, mSecondsChars, mSecondsChars.length, mTextLayout.secondsBounds, mTextLayout.secondsX,
+                    mTextLayout.secondsY);
+        }
+
+        long durationNanos = System.nanoTime() - startNanos;
+        FrameStats frameStats = ambient ? mAmbientFrameStats : mInteractiveFrameStats;
+        frameStats.onFrame(mTimeMs, mTimeMs + durationNanos / 1000000, durationNanos, true);
+        EventTrace.record(EventTrace.EVENT_DRAW_END, durationNanos / 1000);
+
+        if (mDateExecutor.pending != null) runOutsideOfFrames();
+    }
+
+    /**
+     * Same as {@code GlyphAtlas.drawText}, minus the blits.
+     */
+    private void placeSprites(GlyphSpriteLayout sprites, char[] text, int length, Bounds textBounds, int x, int y) {
+        if (!GlyphSpriteLayout.contains(text, length)) throw new AssertionError("Missing glyph");
+        int originX = -textBounds.left + x;
+        int originY = -textBounds.top + y;
+        float advance = 0;
+        for (int i = 0; i < length; i++) {
+            advance = sprites.place(text[i], originX, originY, advance, mSrcBounds, mDstBounds);
+        }
+    }
+
+    /**
+     * Runs the task given to the date executor, without counting what it allocates (on the device, it runs on a background thread).
+     */
+    private void runOutsideOfFrames() {
+        mAllocated += mThreadMXBean.getThreadAllocatedBytes(mThreadId) - mMeasureStart - mOverhead;
+        Runnable pending = mDateExecutor.pending;
+        mDateExecutor.pending = null;
+        pending.run();
+        mDatePrecomputeCount++;
+        mMeasureStart = mThreadMXBean.getThreadAllocatedBytes(mThreadId);
+    }
+}